@@ -0,0 +1,157 @@
+/*
+ * Byte arena for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * An append-only list of byte strings, packed one after another into
+ * large shared chunks. Only the position and length of each string are
+ * kept per entry, so holding millions of strings costs their bytes plus
+ * twelve bytes each, rather than an array and a buffer object apiece.
+ * A string never spans two chunks; one too big for a chunk gets a chunk
+ * of its own.
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+
+public class ByteArena extends AbstractList<ByteBuffer>
+{
+  public static final int CHUNK_SIZE = 1 << 24;
+  public static final int MIN_CHUNK_SIZE = 1 << 12;
+
+  protected int chunkSize;
+  protected byte[][] chunks = new byte[ 0 ][];
+  // bytes used in the last chunk
+  protected int used = 0;
+
+  // string i is length[i] bytes of chunk ( address[i] >>> 32 ),
+  // starting at ( address[i] & 0xffffffff )
+  protected long[] address = new long[ 1024 ];
+  protected int[] length = new int[ 1024 ];
+  protected int size = 0;
+  // the bytes of all the strings
+  protected long bytes = 0;
+
+
+  public ByteArena()
+  {
+    this( CHUNK_SIZE );
+  }
+
+
+  /*
+   * An arena that allocates chunks of chunkSize bytes, for when it will
+   * only ever hold a little.
+   */
+  public ByteArena( int chunkSize )
+  {
+    this.chunkSize = chunkSize;
+  }
+
+
+  /*
+   * chunkSize()
+   *
+   * The chunk size for an arena that will hold about bytes bytes: an
+   * eighth more, within reason.
+   */
+  public static int chunkSize( long bytes )
+  {
+    long size = bytes + bytes / 8;
+    return (int) Math.max( MIN_CHUNK_SIZE, Math.min( size, CHUNK_SIZE ) );
+  }
+
+
+  /*
+   * add()
+   *
+   * Copies the remaining bytes of src onto the end of the arena,
+   * without changing src's position.
+   */
+  public boolean add( ByteBuffer src )
+  {
+    int n = src.remaining();
+    int off = reserve( n );
+    src.duplicate().get( chunks[ chunks.length - 1 ], off, n );
+    record( off, n );
+    return true;
+  }
+
+
+  public void add( byte[] bytes, int offset, int count )
+  {
+    int off = reserve( count );
+    System.arraycopy( bytes, offset, chunks[ chunks.length - 1 ], off, count );
+    record( off, count );
+  }
+
+
+  /*
+   * reserve()
+   *
+   * Makes room for n bytes in the last chunk, starting a new chunk if
+   * they don't fit, and returns where they go.
+   */
+  protected int reserve( int n )
+  {
+    if ( chunks.length == 0 || used + n > chunks[ chunks.length - 1 ].length ) {
+      chunks = Arrays.copyOf( chunks, chunks.length + 1 );
+      chunks[ chunks.length - 1 ] = new byte[ Math.max( n, chunkSize ) ];
+      used = 0;
+    }
+    int off = used;
+    used += n;
+    return off;
+  }
+
+
+  protected void record( int off, int n )
+  {
+    if ( size == address.length ) {
+      address = Arrays.copyOf( address, size * 2 );
+      length = Arrays.copyOf( length, size * 2 );
+    }
+    address[ size ] = ( (long) ( chunks.length - 1 ) << 32 ) | off;
+    length[ size ] = n;
+    size++;
+    bytes += n;
+  }
+
+
+  /*
+   * get()
+   *
+   * Returns string i as a buffer over the chunk that holds it; nothing is
+   * copied.
+   */
+  public ByteBuffer get( int i )
+  {
+    return ByteBuffer.wrap( chunks[ (int) ( address[i] >>> 32 ) ],
+        (int) address[i], length[i] ).slice();
+  }
+
+
+  /*
+   * string()
+   *
+   * Decodes string i from UTF-8.
+   */
+  public String string( int i )
+  {
+    return new String( chunks[ (int) ( address[i] >>> 32 ) ],
+        (int) address[i], length[i], StandardCharsets.UTF_8 );
+  }
+
+
+  public int size()
+  {
+    return size;
+  }
+
+
+  public long bytes()
+  {
+    return bytes;
+  }
+}
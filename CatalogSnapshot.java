@@ -0,0 +1,414 @@
+/*
+ * Product catalog snapshot for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Saves the product catalog built from the product file in a binary
+ * file, so that a later run can start from it instead of parsing the
+ * product file's JSON and building the index again. The product index
+ * (the automaton and the product tables) is all flat int and long
+ * tables, and those are matched through right where the snapshot is
+ * mapped: nothing is copied out of them or built from them, and
+ * processes that map the same snapshot share its pages. Only the
+ * product and manufacturer names are decoded, since the results and
+ * the manufacturer resolver need them as strings; the Product records
+ * are only made when an option asks for them.
+ *
+ * A snapshot records the size, modification time and CRC-32 of the
+ * product file it was built from, and is only used while the product
+ * file still has that size and checksum. The checksum is always worked
+ * out again, since a file can be changed without changing its size or
+ * its time.
+ *
+ * Layout (big-endian):
+ *   int     MAGIC
+ *   int     VERSION
+ *   long    size of the product file
+ *   long    modification time of the product file
+ *   long    checksum of the product file
+ *   int     number of product names, then each name
+ *   int     number of manufacturers, then each name
+ *   int     number of products, then for each product, in manufacturer
+ *           order: family (or NO_STRING), model
+ *   int     number of patterns, states, transition slots, model
+ *           products and empty model products
+ *   zeros up to a multiple of eight bytes, then the tables:
+ *   long[]  automaton transition keys, by slot
+ *   int[]   automaton transition targets, by slot
+ *   int[]   pattern lengths
+ *   int[]   automaton outputs, failure links and dictionary links,
+ *           by state
+ *   int[]   product manufacturers, positions, families and ordinals,
+ *           by product
+ *   int[]   model starts (one more than there are patterns), model
+ *           products and empty model products
+ * Each string is an int byte count followed by that many UTF-8 bytes.
+ * The tables are taken as written, without checking every entry; a
+ * snapshot is only ever put in place whole, and one that isn't exactly
+ * as long as its counts say is refused.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+public class CatalogSnapshot
+{
+  public static final int MAGIC = 0x53434154; // "SCAT"
+  // bump whenever the layout changes
+  public static final int VERSION = 3;
+  // the byte count written in place of a missing family
+  protected static final int NO_STRING = -1;
+
+  // the catalog, as it was when the snapshot was written
+  public final List<String> productNames;
+  public final String[] manufacturers;
+  public final ProductIndex productIndex;
+  // the mapping, and where the products' strings start in it
+  protected final ByteBuffer mapping;
+  protected final int productStrings;
+
+
+  protected CatalogSnapshot( List<String> productNames,
+      String[] manufacturers, ProductIndex productIndex, ByteBuffer mapping,
+      int productStrings )
+  {
+    this.productNames = productNames;
+    this.manufacturers = manufacturers;
+    this.productIndex = productIndex;
+    this.mapping = mapping;
+    this.productStrings = productStrings;
+  }
+
+
+  /*
+   * checksum()
+   *
+   * Returns the CRC-32 of the bytes of file.
+   */
+  public static long checksum( File file )
+  throws IOException
+  {
+    CRC32 crc = new CRC32();
+    FileChannel channel = new RandomAccessFile( file, "r" ).getChannel();
+    try {
+      long size = channel.size();
+      for ( long base = 0; base < size; base += MappedLineFile.SEGMENT_SIZE ) {
+        crc.update( channel.map( FileChannel.MapMode.READ_ONLY, base,
+            Math.min( MappedLineFile.SEGMENT_SIZE, size - base ) ) );
+      }
+    } finally {
+      channel.close();
+    }
+    return crc.getValue();
+  }
+
+
+  /*
+   * write()
+   *
+   * Writes a snapshot of the catalog built from source to path. It's
+   * written to a temporary file first and then moved into place, so a
+   * process that is loading the old snapshot reads the old one
+   * undisturbed.
+   */
+  public static void write( String path, File source,
+      List<String> productNames, String[] manufacturers,
+      Product[][] manufacturerProducts, ProductIndex productIndex )
+  throws IOException
+  {
+    // the size and time go first, so a change while the checksum is
+    // worked out leaves the snapshot looking out of date, not current
+    long size = source.length();
+    long modified = source.lastModified();
+    long checksum = checksum( source );
+    ModelAutomaton automaton = productIndex.automaton;
+    File target = new File( path );
+    File temp = new File( path + ".tmp" );
+    DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream( new FileOutputStream( temp ) ) );
+    try {
+      out.writeInt( MAGIC );
+      out.writeInt( VERSION );
+      out.writeLong( size );
+      out.writeLong( modified );
+      out.writeLong( checksum );
+      out.writeInt( productNames.size() );
+      for ( String name : productNames ) {
+        writeString( out, name );
+      }
+      out.writeInt( manufacturers.length );
+      for ( String manufacturer : manufacturers ) {
+        writeString( out, manufacturer );
+      }
+      out.writeInt( productIndex.productCount() );
+      for ( Product[] products : manufacturerProducts ) {
+        for ( Product product : products ) {
+          writeString( out, product.family );
+          writeString( out, product.model );
+        }
+      }
+
+      out.writeInt( automaton.patternCount() );
+      out.writeInt( automaton.output.limit() );
+      out.writeInt( automaton.keys.limit() );
+      out.writeInt( productIndex.modelProducts.limit() );
+      out.writeInt( productIndex.emptyModelProducts.limit() );
+      while ( out.size() % 8 != 0 ) {
+        out.writeByte( 0 );
+      }
+      for ( int i = 0; i < automaton.keys.limit(); i++ ) {
+        out.writeLong( automaton.keys.get( i ) );
+      }
+      IntBuffer[] tables = { automaton.targets, automaton.patternLength,
+          automaton.output, automaton.fail, automaton.dictLink,
+          productIndex.productManufacturer, productIndex.productPosition,
+          productIndex.productFamily, productIndex.productOrdinal,
+          productIndex.modelStart, productIndex.modelProducts,
+          productIndex.emptyModelProducts };
+      for ( IntBuffer table : tables ) {
+        for ( int i = 0; i < table.limit(); i++ ) {
+          out.writeInt( table.get( i ) );
+        }
+      }
+    } finally {
+      out.close();
+    }
+    Files.move( temp.toPath(), target.toPath(),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+  }
+
+
+  protected static void writeString( DataOutputStream out, String s )
+  throws IOException
+  {
+    if ( s == null ) {
+      out.writeInt( NO_STRING );
+      return;
+    }
+    byte[] bytes = s.getBytes( StandardCharsets.UTF_8 );
+    out.writeInt( bytes.length );
+    out.write( bytes );
+  }
+
+
+  /*
+   * map()
+   *
+   * Maps the snapshot at path and returns the catalog in it, or null if
+   * there's no snapshot there, or it isn't one this version can read, or
+   * it was built from a product file other than source as it is now.
+   * No JSON is parsed, and the product index is used in place.
+   *
+   * Calls isCurrent(), readCount(), readString(), skipString(), ints(),
+   * longs()
+   */
+  public static CatalogSnapshot map( String path, File source )
+  throws IOException
+  {
+    File file = new File( path );
+    if ( !file.exists() ) {
+      return null;
+    }
+    FileChannel channel = new RandomAccessFile( file, "r" ).getChannel();
+    try {
+      MappedByteBuffer in =
+          channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+      if ( in.remaining() < 32 || in.getInt() != MAGIC
+          || in.getInt() != VERSION
+          || !isCurrent( source, in.getLong(), in.getLong(), in.getLong() ) ) {
+        return null;
+      }
+
+      int count = readCount( in );
+      List<String> productNames = new ArrayList<String>( count );
+      for ( int i = 0; i < count; i++ ) {
+        productNames.add( readString( in ) );
+      }
+      String[] manufacturers = new String[ readCount( in ) ];
+      for ( int m = 0; m < manufacturers.length; m++ ) {
+        manufacturers[m] = readString( in );
+      }
+      int products = readCount( in );
+      int productStrings = in.position();
+      for ( int q = 0; q < products; q++ ) {
+        skipString( in );
+        skipString( in );
+      }
+
+      int patterns = in.getInt();
+      int states = in.getInt();
+      int slots = in.getInt();
+      int modelProducts = in.getInt();
+      int emptyModelProducts = in.getInt();
+      in.position( ( in.position() + 7 ) & ~7 );
+      LongBuffer keys = longs( in, slots );
+      IntBuffer targets = ints( in, slots );
+      IntBuffer patternLength = ints( in, patterns );
+      ModelAutomaton automaton = new ModelAutomaton( patternLength,
+          ints( in, states ), ints( in, states ), ints( in, states ),
+          keys, targets );
+      ProductIndex productIndex = new ProductIndex( automaton,
+          ints( in, products ), ints( in, products ), ints( in, products ),
+          ints( in, products ), ints( in, patterns + 1 ),
+          ints( in, modelProducts ), ints( in, emptyModelProducts ) );
+      if ( in.hasRemaining() ) {
+        throw new IllegalStateException( "trailing bytes" );
+      }
+      return new CatalogSnapshot( productNames, manufacturers, productIndex,
+          in, productStrings );
+    } catch ( RuntimeException e ) {
+      // cut short or otherwise damaged; treat it as missing
+      return null;
+    } finally {
+      channel.close();
+    }
+  }
+
+
+  /*
+   * products()
+   *
+   * Makes the Product records of every manufacturer, from the strings
+   * and tables in the snapshot.
+   *
+   * Calls readString()
+   */
+  public Product[][] products()
+  {
+    IntBuffer manufacturer = productIndex.productManufacturer;
+    IntBuffer position = productIndex.productPosition;
+    IntBuffer ordinal = productIndex.productOrdinal;
+    int[] count = new int[ manufacturers.length ];
+    for ( int q = 0; q < productIndex.productCount(); q++ ) {
+      count[ manufacturer.get( q ) ]++;
+    }
+    Product[][] manufacturerProducts = new Product[ manufacturers.length ][];
+    for ( int m = 0; m < manufacturers.length; m++ ) {
+      manufacturerProducts[m] = new Product[ count[m] ];
+    }
+
+    ByteBuffer in = mapping.duplicate();
+    in.position( productStrings );
+    for ( int q = 0; q < productIndex.productCount(); q++ ) {
+      int m = manufacturer.get( q );
+      String family = readString( in );
+      String model = readString( in );
+      manufacturerProducts[m][ position.get( q ) ] = new Product(
+          ordinal.get( q ), productNames.get( ordinal.get( q ) ),
+          manufacturers[m], family, model );
+    }
+    return manufacturerProducts;
+  }
+
+
+  /*
+   * isCurrent()
+   *
+   * Whether source is still the product file that had size and
+   * checksum. A file of another size is out of date without working
+   * out its checksum; modified isn't trusted either way.
+   *
+   * Calls checksum()
+   */
+  protected static boolean isCurrent( File source, long size, long modified,
+      long checksum )
+  throws IOException
+  {
+    if ( source.length() != size ) {
+      return false;
+    }
+    return checksum( source ) == checksum;
+  }
+
+
+  /*
+   * readCount()
+   *
+   * Reads a number of entries, refusing one that can't possibly fit in
+   * what's left of the snapshot (every entry takes at least four bytes),
+   * so a damaged count can't ask for a huge array.
+   */
+  protected static int readCount( ByteBuffer in )
+  {
+    int count = in.getInt();
+    if ( count < 0 || count > in.remaining() / 4 ) {
+      throw new IllegalStateException( "bad count: " + count );
+    }
+    return count;
+  }
+
+
+  protected static String readString( ByteBuffer in )
+  {
+    int length = stringLength( in );
+    if ( length == NO_STRING ) {
+      return null;
+    }
+    byte[] bytes = new byte[ length ];
+    in.get( bytes );
+    return new String( bytes, StandardCharsets.UTF_8 );
+  }
+
+
+  protected static void skipString( ByteBuffer in )
+  {
+    int length = stringLength( in );
+    if ( length != NO_STRING ) {
+      in.position( in.position() + length );
+    }
+  }
+
+
+  protected static int stringLength( ByteBuffer in )
+  {
+    int length = in.getInt();
+    if ( length != NO_STRING && ( length < 0 || length > in.remaining() ) ) {
+      throw new IllegalStateException( "bad string length: " + length );
+    }
+    return length;
+  }
+
+
+  /*
+   * ints()
+   *
+   * Returns the next n ints of in as a view over the same bytes, and
+   * moves in past them.
+   */
+  protected static IntBuffer ints( ByteBuffer in, int n )
+  {
+    if ( n < 0 || n > in.remaining() / 4 ) {
+      throw new IllegalStateException( "bad table length: " + n );
+    }
+    ByteBuffer table = in.slice();
+    table.limit( n * 4 );
+    in.position( in.position() + n * 4 );
+    return table.asIntBuffer();
+  }
+
+
+  protected static LongBuffer longs( ByteBuffer in, int n )
+  {
+    if ( n < 0 || n > in.remaining() / 8 ) {
+      throw new IllegalStateException( "bad table length: " + n );
+    }
+    ByteBuffer table = in.slice();
+    table.limit( n * 8 );
+    in.position( in.position() + n * 8 );
+    return table.asLongBuffer();
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Background gunzip stream for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * An InputStream that decompresses a gzip stream on its own thread.
+ * The inflater thread fills fixed-size chunks and hands them over through
+ * a bounded queue, so decompression runs alongside whatever is reading
+ * (and parsing) the output, and stalls instead of running ahead once the
+ * queue is full.
+ */
+
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+public class GunzipInputStream extends InputStream
+{
+  public static final int CHUNK_SIZE = 1 << 18;
+  public static final int QUEUE_SIZE = 16;
+
+  // put on the queue after the last chunk
+  protected static final byte[] END = new byte[ 0 ];
+
+  protected BlockingQueue<byte[]> queue =
+      new ArrayBlockingQueue<byte[]>( QUEUE_SIZE );
+  protected Thread inflater;
+  // set by the inflater thread before it puts END on the queue
+  protected volatile IOException error = null;
+
+  // the chunk being read, and how much of it has been read
+  protected byte[] chunk = null;
+  protected int position = 0;
+
+
+  /*
+   * The gzip header is read before the constructor returns, so a bad
+   * header is reported here rather than on the first read.
+   */
+  public GunzipInputStream( InputStream in )
+  throws IOException
+  {
+    final GZIPInputStream gzip = new GZIPInputStream( in, CHUNK_SIZE );
+    inflater = new Thread( "gunzip" ) {
+      public void run()
+      {
+        inflate( gzip );
+      }
+    };
+    inflater.setDaemon( true );
+    inflater.start();
+  }
+
+
+  /*
+   * inflate()
+   *
+   * Runs on the inflater thread: reads full chunks from gzip and queues
+   * them until the stream ends, fails, or the reader closes this stream.
+   */
+  protected void inflate( GZIPInputStream gzip )
+  {
+    try {
+      for (;;) {
+        byte[] buffer = new byte[ CHUNK_SIZE ];
+        int n = 0;
+        int r = 0;
+        while ( n < buffer.length
+            && ( r = gzip.read( buffer, n, buffer.length - n ) ) >= 0 ) {
+          n += r;
+        }
+        if ( n > 0 ) {
+          queue.put( n == buffer.length ? buffer : Arrays.copyOf( buffer, n ) );
+        }
+        if ( r < 0 ) {
+          break;
+        }
+      }
+    } catch ( IOException e ) {
+      error = e;
+    } catch ( InterruptedException e ) {
+      // closed by the reader; nobody is waiting for END
+      return;
+    } finally {
+      try {
+        gzip.close();
+      } catch ( IOException e ) {
+        // nothing more to read from it anyway
+      }
+    }
+
+    try {
+      queue.put( END );
+    } catch ( InterruptedException e ) {
+      // closed by the reader
+    }
+  }
+
+
+  public int read()
+  throws IOException
+  {
+    byte[] b = new byte[ 1 ];
+    return ( read( b, 0, 1 ) < 0 ) ? -1 : ( b[ 0 ] & 0xff );
+  }
+
+
+  /*
+   * read()
+   *
+   * Copies from the current chunk, waiting for the inflater thread
+   * when the current chunk has been used up.
+   */
+  public int read( byte[] b, int off, int len )
+  throws IOException
+  {
+    if ( len == 0 ) {
+      return 0;
+    }
+    if ( chunk == null || position == chunk.length ) {
+      if ( chunk == END ) {
+        return -1;
+      }
+      try {
+        chunk = queue.take();
+      } catch ( InterruptedException e ) {
+        throw new InterruptedIOException( "interrupted while decompressing" );
+      }
+      position = 0;
+      if ( chunk == END ) {
+        if ( error != null ) {
+          throw error;
+        }
+        return -1;
+      }
+    }
+
+    int n = Math.min( len, chunk.length - position );
+    System.arraycopy( chunk, position, b, off, n );
+    position += n;
+    return n;
+  }
+
+
+  /*
+   * close()
+   *
+   * Stops the inflater thread, which closes the compressed stream.
+   */
+  public void close()
+  {
+    inflater.interrupt();
+    chunk = END;
+  }
+}
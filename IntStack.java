@@ -0,0 +1,72 @@
+/*
+ * Int stack for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * A growable stack of primitive ints, so that a list of listing numbers
+ * costs four bytes per entry instead of a boxed Integer each.
+ */
+
+import java.util.Arrays;
+
+public class IntStack
+{
+  protected int[] items;
+  protected int size = 0;
+
+
+  public IntStack()
+  {
+    this( 8 );
+  }
+
+
+  public IntStack( int capacity )
+  {
+    items = new int[ Math.max( capacity, 1 ) ];
+  }
+
+
+  public void push( int item )
+  {
+    if ( size == items.length ) {
+      items = Arrays.copyOf( items, size * 2 );
+    }
+    items[ size++ ] = item;
+  }
+
+
+  public int get( int i )
+  {
+    return items[ i ];
+  }
+
+
+  public int size()
+  {
+    return size;
+  }
+
+
+  public boolean empty()
+  {
+    return size == 0;
+  }
+
+
+  public void clear()
+  {
+    size = 0;
+  }
+
+
+  /*
+   * toArray()
+   *
+   * Returns the items from the bottom of the stack up, in an array of
+   * exactly the right size.
+   */
+  public int[] toArray()
+  {
+    return Arrays.copyOf( items, size );
+  }
+}
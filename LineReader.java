@@ -0,0 +1,119 @@
+/*
+ * Line reader for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Reads newline-delimited records (one JSON object per line) from an
+ * InputStream. Input is pulled in large blocks and scanned for '\n' in
+ * bulk, so finding the end of a line never goes through a per-character
+ * Reader call.
+ */
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class LineReader
+{
+  public static final int BUFFER_SIZE = 1 << 20;
+
+  protected InputStream in;
+  protected byte[] buffer;
+  // the unread part of the buffer is buffer[ position, limit )
+  protected int position = 0;
+  protected int limit = 0;
+  protected boolean eof = false;
+
+
+  public LineReader( InputStream in )
+  {
+    this.in = in;
+    this.buffer = new byte[ BUFFER_SIZE ];
+  }
+
+
+  /*
+   * readLine()
+   *
+   * Returns the bytes of the next non-blank line with surrounding
+   * whitespace trimmed, or null once the input is exhausted.
+   * The line is a view of the reader's buffer, not a copy, so it's only
+   * good until the next call; anything kept has to be copied out first.
+   * The newline byte can't occur inside a multi-byte UTF-8 character,
+   * so lines are split without decoding anything; the parser decodes
+   * only what it needs straight from the returned bytes.
+   *
+   * Calls fill()
+   */
+  public ByteBuffer readLine()
+  throws IOException
+  {
+    for (;;) {
+      // look for the end of the line in what's already buffered
+      int end = position;
+      while ( end < limit && buffer[ end ] != '\n' ) {
+        end++;
+      }
+
+      if ( end == limit && !eof ) {
+        // no newline yet; pull in more input and scan again
+        fill();
+        continue;
+      }
+      if ( end == limit && position == limit ) {
+        // nothing left at all
+        return null;
+      }
+
+      // trim the line in place, the same way nextTo() trimmed it
+      int start = position;
+      position = ( end < limit ) ? end + 1 : end;
+      while ( start < end && ( buffer[ start ] & 0xff ) <= ' ' ) {
+        start++;
+      }
+      while ( end > start && ( buffer[ end - 1 ] & 0xff ) <= ' ' ) {
+        end--;
+      }
+      // skip blank lines; there's nothing to parse in them
+      if ( start < end ) {
+        return ByteBuffer.wrap( buffer, start, end - start ).slice();
+      }
+    }
+  }
+
+
+  /*
+   * fill()
+   *
+   * Moves the unread bytes to the front of the buffer and reads as much
+   * as will fit after them. The buffer is doubled if a single line
+   * doesn't fit in it.
+   */
+  protected void fill()
+  throws IOException
+  {
+    int unread = limit - position;
+    if ( unread == buffer.length ) {
+      byte[] bigger = new byte[ buffer.length * 2 ];
+      System.arraycopy( buffer, position, bigger, 0, unread );
+      buffer = bigger;
+    } else {
+      System.arraycopy( buffer, position, buffer, 0, unread );
+    }
+    position = 0;
+    limit = unread;
+
+    int n = in.read( buffer, limit, buffer.length - limit );
+    if ( n < 0 ) {
+      eof = true;
+    } else {
+      limit += n;
+    }
+  }
+
+
+  public void close()
+  throws IOException
+  {
+    in.close();
+  }
+}
@@ -0,0 +1,389 @@
+/*
+ * Listing matcher for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Matches listings from the listing store against the product index
+ * that Match has built. The index is only read, so any number of
+ * matchers can share it; each matcher has its own scratch space and its
+ * own match cache, so each one can run on its own thread.
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+public class ListingMatcher
+{
+  protected static final int[] NO_MATCHES = new int[ 0 ];
+
+  // the shared index, as Match built it
+  protected final ListingStore listings = Match.listings;
+  protected final int[][] manufacturerMatches = Match.manufacturerMatches;
+  // only there when the token or variant index needs the products
+  protected final Product[][] manufacturerProducts = Match.manufacturerProducts;
+  protected final ModelAutomaton automaton = Match.productIndex.automaton;
+  protected final IntBuffer productManufacturer =
+      Match.productIndex.productManufacturer;
+  protected final IntBuffer productPosition =
+      Match.productIndex.productPosition;
+  protected final IntBuffer productFamily = Match.productIndex.productFamily;
+  protected final IntBuffer productOrdinal =
+      Match.productIndex.productOrdinal;
+  protected final IntBuffer modelStart = Match.productIndex.modelStart;
+  protected final IntBuffer modelProducts = Match.productIndex.modelProducts;
+  protected final IntBuffer emptyModelProducts =
+      Match.productIndex.emptyModelProducts;
+  protected final TokenIndex tokenIndex = Match.tokenIndex;
+  protected final VariantIndex variantIndex = Match.variantIndex;
+  protected final ModelFilter[] filters = Match.manufacturerFilters;
+
+  // remembers the matches of titles already seen, if there's a cache
+  protected MatchCache matchCache = null;
+  // how the model filters have done, if there are any
+  protected ModelFilter.Stats filterStats = new ModelFilter.Stats();
+
+  // scratch space; an entry is only current when its stamp is that of
+  // the listing being matched
+  protected int stamp = 0;
+  protected IntStack hits = new IntStack();
+  protected IntStack runs = new IntStack();
+  protected StringBuilder key = new StringBuilder();
+  protected int[] foundStamp;
+  protected int[] boundedStamp;
+  protected int[] candidateStamp;
+  protected int[] manufacturerStamp;
+  protected int[] bestStamp;
+  // the product chosen for each manufacturer
+  protected int[] best;
+  protected int[] productStamp;
+  protected IntStack chosen = new IntStack();
+
+
+  /*
+   * Makes a matcher over the index Match has built, with a match cache
+   * of cacheSize entries (none if it's 0).
+   */
+  public ListingMatcher( int cacheSize )
+  {
+    if ( cacheSize > 0 ) {
+      matchCache = new MatchCache( cacheSize );
+    }
+    foundStamp = new int[ automaton.patternCount() ];
+    boundedStamp = new int[ automaton.patternCount() ];
+    candidateStamp = new int[ automaton.patternCount() ];
+    manufacturerStamp = new int[ Match.manufacturers.length ];
+    bestStamp = new int[ Match.manufacturers.length ];
+    best = new int[ Match.manufacturers.length ];
+    productStamp = new int[ Match.productIndex.productCount() ];
+  }
+
+
+  /*
+   * match()
+   *
+   * Takes listing n from the listing store and matches it against the
+   * products of the manufacturers that its manufacturer matches.
+   * The title is scanned once for every model and family. Only products
+   * whose model was found are candidates: a product with a family needs
+   * its family found too, and its model found with word boundaries;
+   * a product without one just needs its model found.
+   * With the token index, the candidates come from the index instead,
+   * and each is checked with familyAndModelMatch().
+   * With the variant index, products whose model is spelled differently
+   * in the title (but has the same key) match too.
+   * With model filters, a title that none of the manufacturers' filters
+   * let through isn't matched at all.
+   * For each manufacturer, the first matching product in its list wins,
+   * the same as checking its products in order with
+   * familyAndModelMatch() and stopping at the first match.
+   * Returns the ordinals of the matching products. The array may be
+   * shared, so it mustn't be changed.
+   *
+   * Calls match()
+   */
+  public int[] match( int n )
+  {
+    return match( listings, n,
+        manufacturerMatches[ listings.manufacturerId( n ) ] );
+  }
+
+
+  /*
+   * match()
+   *
+   * Matches listing i of store, given the indexes of the manufacturers
+   * that its manufacturer matches.
+   * The products matched are remembered in the match cache, and a
+   * listing with the same title and manufacturer as one already matched
+   * just gets the same products, without being matched again.
+   *
+   * Calls mightMatch(), nextStamp(), matchModels(), matchCandidates(),
+   * matchVariants(), chooseMatches()
+   */
+  public int[] match( ListingStore store, int i, int[] matches )
+  {
+    if ( matches.length == 0 ) {
+      // no manufacturer, so there's nothing to find in the title
+      return NO_MATCHES;
+    }
+
+    long fingerprint = 0;
+    ByteBuffer titleBytes = null;
+    String manufacturer = null;
+    if ( matchCache != null ) {
+      titleBytes = store.titleBytes( i );
+      manufacturer = store.manufacturer( store.manufacturerId( i ) );
+      fingerprint = MatchCache.fingerprint( titleBytes, manufacturer );
+      int[] ordinals = matchCache.lookup( fingerprint, titleBytes,
+          manufacturer );
+      if ( ordinals != null ) {
+        return ordinals;
+      }
+    }
+
+    String title = store.title( i );
+    if ( filters != null && !mightMatch( title, matches ) ) {
+      if ( matchCache != null ) {
+        matchCache.put( fingerprint, titleBytes, manufacturer, NO_MATCHES );
+      }
+      return NO_MATCHES;
+    }
+
+    int stamp = nextStamp();
+    for ( int m = 0; m < matches.length; m++ ) {
+      manufacturerStamp[ matches[m] ] = stamp;
+    }
+    if ( tokenIndex != null ) {
+      matchCandidates( title, stamp );
+    } else {
+      matchModels( title, stamp );
+    }
+    if ( variantIndex != null ) {
+      matchVariants( title, stamp );
+    }
+    int[] ordinals = chooseMatches( matches, stamp );
+    if ( filters != null && ordinals.length == 0 ) {
+      filterStats.misses++;
+    }
+
+    if ( matchCache != null ) {
+      matchCache.put( fingerprint, titleBytes, manufacturer, ordinals );
+    }
+    return ordinals;
+  }
+
+
+  /*
+   * mightMatch()
+   *
+   * Checks title against the model filters of the manufacturers that
+   * the listing's manufacturer matches, counting the check, and whether
+   * every filter turned it away.
+   */
+  protected boolean mightMatch( String title, int[] matches )
+  {
+    filterStats.checks++;
+    for ( int m = 0; m < matches.length; m++ ) {
+      if ( filters[ matches[m] ].mightMatch( title ) ) {
+        return true;
+      }
+    }
+    filterStats.skips++;
+    return false;
+  }
+
+
+  /*
+   * nextStamp()
+   *
+   * Returns a stamp that no scratch entry has yet. If the stamps ever run
+   * out, the scratch space is cleared and they start over.
+   */
+  protected int nextStamp()
+  {
+    if ( ++stamp == Integer.MAX_VALUE ) {
+      int[][] stamped = { foundStamp, boundedStamp, candidateStamp,
+          manufacturerStamp, bestStamp, productStamp };
+      for ( int[] a : stamped ) {
+        Arrays.fill( a, 0 );
+      }
+      stamp = 1;
+    }
+    return stamp;
+  }
+
+
+  /*
+   * matchModels()
+   *
+   * Finds the products that match title with the automaton, choosing
+   * each manufacturer's first match. A product with an empty model
+   * matches without a family, or with its family found and any word
+   * boundary in the title, as familyAndModelMatch() would have it.
+   *
+   * Calls ModelMatcher.hasBoundary()
+   */
+  protected void matchModels( String title, int stamp )
+  {
+    // find every model and family, noting which ones are word-bounded
+    hits.clear();
+    automaton.scan( title, hits );
+    for ( int h = 0; h < hits.size(); h += 2 ) {
+      int p = hits.get( h );
+      int end = hits.get( h + 1 );
+      foundStamp[p] = stamp;
+      if ( ModelMatcher.isBoundary( title, end - automaton.length( p ) )
+          && ModelMatcher.isBoundary( title, end ) ) {
+        boundedStamp[p] = stamp;
+      }
+    }
+
+    // check the products whose model was found
+    for ( int h = 0; h < hits.size(); h += 2 ) {
+      int p = hits.get( h );
+      if ( candidateStamp[p] == stamp ) {
+        continue;
+      }
+      candidateStamp[p] = stamp;
+      for ( int i = modelStart.get( p ); i < modelStart.get( p + 1 ); i++ ) {
+        int q = modelProducts.get( i );
+        int family = productFamily.get( q );
+        if ( family < 0 || ( boundedStamp[p] == stamp
+            && familyFound( family, stamp ) ) ) {
+          chooseProduct( q, stamp );
+        }
+      }
+    }
+    for ( int i = 0; i < emptyModelProducts.limit(); i++ ) {
+      int q = emptyModelProducts.get( i );
+      int family = productFamily.get( q );
+      if ( family < 0 || ( familyFound( family, stamp )
+          && ModelMatcher.hasBoundary( title ) ) ) {
+        chooseProduct( q, stamp );
+      }
+    }
+  }
+
+
+  /*
+   * familyFound()
+   *
+   * Whether the title being matched has the family with pattern number
+   * family; an empty family is in every title.
+   */
+  protected boolean familyFound( int family, int stamp )
+  {
+    return foundStamp[ family ] == stamp || automaton.length( family ) == 0;
+  }
+
+
+  /*
+   * matchCandidates()
+   *
+   * Checks every candidate product that the token index finds for title
+   * with familyAndModelMatch(), once each.
+   *
+   * Calls Match.familyAndModelMatch()
+   */
+  protected void matchCandidates( String title, int stamp )
+  {
+    hits.clear();
+    tokenIndex.candidates( title, runs, hits );
+    for ( int i = 0; i < hits.size(); i++ ) {
+      int q = hits.get( i );
+      if ( productStamp[q] == stamp
+          || manufacturerStamp[ productManufacturer.get( q ) ] != stamp ) {
+        continue;
+      }
+      productStamp[q] = stamp;
+      if ( Match.familyAndModelMatch( product( q ), title ) ) {
+        chooseProduct( q, stamp );
+      }
+    }
+  }
+
+
+  /*
+   * matchVariants()
+   *
+   * Chooses the products that the variant index finds in title, if their
+   * family (if any) is in the title too.
+   */
+  protected void matchVariants( String title, int stamp )
+  {
+    hits.clear();
+    variantIndex.candidates( title, key, hits );
+    for ( int i = 0; i < hits.size(); i++ ) {
+      int q = hits.get( i );
+      String family = product( q ).family;
+      if ( family == null || title.contains( family ) ) {
+        chooseProduct( q, stamp );
+      }
+    }
+  }
+
+
+  /*
+   * chooseProduct()
+   *
+   * Records matching product q as its manufacturer's match for the
+   * listing being matched, unless an earlier product in the
+   * manufacturer's list has already matched; products from
+   * manufacturers that the listing doesn't match are ignored.
+   */
+  protected void chooseProduct( int q, int stamp )
+  {
+    int m = productManufacturer.get( q );
+    if ( manufacturerStamp[m] != stamp ) {
+      return;
+    }
+    // products are numbered in list order, so the first has the lowest
+    if ( bestStamp[m] != stamp || q < best[m] ) {
+      best[m] = q;
+      bestStamp[m] = stamp;
+    }
+  }
+
+
+  /*
+   * chooseMatches()
+   *
+   * Returns the ordinals of the products chosen for the matching
+   * manufacturers, in manufacturer order.
+   */
+  protected int[] chooseMatches( int[] matches, int stamp )
+  {
+    chosen.clear();
+    for ( int i = 0; i < matches.length; i++ ) {
+      int m = matches[i];
+      if ( bestStamp[m] == stamp ) {
+        chosen.push( productOrdinal.get( best[m] ) );
+      }
+    }
+    return chosen.empty() ? NO_MATCHES : chosen.toArray();
+  }
+
+
+  protected Product product( int q )
+  {
+    return manufacturerProducts[ productManufacturer.get( q ) ]
+        [ productPosition.get( q ) ];
+  }
+
+
+  /*
+   * cache()
+   *
+   * Returns this matcher's match cache, or null if it hasn't got one.
+   */
+  public MatchCache cache()
+  {
+    return matchCache;
+  }
+
+
+  public ModelFilter.Stats filterStats()
+  {
+    return filterStats;
+  }
+}
@@ -0,0 +1,331 @@
+/*
+ * Listing pipeline for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Streams the listings through four stages:
+ *   read     reads lines and packs them into batches
+ *   parse    parses each batch into its own ListingStore
+ *   match    matches each listing in the batch
+ *   collect  keeps the raw bytes of the listings that matched something,
+ *            and puts them on their products' results lists
+ * Reading and collecting each have one thread; parsing and matching have
+ * as many workers as there are threads (each match worker with its own
+ * ListingMatcher), each taking whichever batch is next. The stages hand
+ * batches along through small bounded queues, so a stage that gets
+ * ahead blocks until the next one catches up, and reading, parsing and
+ * matching all overlap.
+ *
+ * Batches can reach the collect stage out of order, so it holds on to
+ * early ones until the batches before them arrive, and collects them in
+ * the order they were read; the results are the same as with one worker.
+ * Only so many batches are let in between reading and collecting, so an
+ * early batch never has to wait for long.
+ *
+ * Only the listings that matched are kept, since every product's line
+ * in the results needs all of its listings at once. Everything else is
+ * dropped as soon as it has been matched, so memory doesn't grow with the
+ * size of the feed, only with the number of matches.
+ */
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ListingPipeline
+{
+  public static final int BATCH_SIZE = 4096;
+  public static final int QUEUE_SIZE = 4;
+  // the chunk size of the first batch; later batches have chunks the
+  // size of the batch before them, give or take
+  protected static final int FIRST_CHUNK_SIZE = 1 << 16;
+  // the kept listings grow with the matches, so they grow a little at
+  // a time
+  protected static final int KEPT_CHUNK_SIZE = 1 << 20;
+
+  /*
+   * A run of consecutive listings on its way through the stages.
+   */
+  protected static class Batch
+  {
+    // where the batch comes in the listings, counting from 0
+    protected int index;
+    // the raw listings
+    protected ByteArena lines;
+    // the parsed listings
+    protected ListingStore parsed = null;
+    // what each listing matched
+    protected int[][] ordinals = null;
+
+
+    protected Batch( int index, int chunkSize )
+    {
+      this.index = index;
+      this.lines = new ByteArena( chunkSize );
+    }
+  }
+
+  // passed along after the last batch
+  protected static final Batch END = new Batch( -1, 0 );
+
+  protected LineReader reader;
+  protected int workers;
+  protected List<ListingMatcher> matchers = new ArrayList<ListingMatcher>();
+  protected BlockingQueue<Batch> toParse =
+      new ArrayBlockingQueue<Batch>( QUEUE_SIZE );
+  protected BlockingQueue<Batch> toMatch =
+      new ArrayBlockingQueue<Batch>( QUEUE_SIZE );
+  protected BlockingQueue<Batch> toCollect =
+      new ArrayBlockingQueue<Batch>( QUEUE_SIZE );
+  // a permit for each batch that may be between reading and collecting
+  protected Semaphore inFlight;
+  // workers that haven't seen END yet
+  protected AtomicInteger parsing;
+  protected AtomicInteger matching;
+
+  // the listings that matched, numbered in the order they were read
+  protected ByteArena kept = new ByteArena( KEPT_CHUNK_SIZE );
+
+
+  /*
+   * Makes a pipeline that reads the listings from reader, and parses and
+   * matches them with workers workers each, matching with a match cache
+   * of cacheSize entries (none if it's 0) per worker.
+   * Match's product index and manufacturer resolver must be ready.
+   */
+  public ListingPipeline( LineReader reader, int cacheSize, int workers )
+  {
+    this.reader = reader;
+    this.workers = workers;
+    for ( int w = 0; w < workers; w++ ) {
+      matchers.add( new ListingMatcher( cacheSize ) );
+    }
+    this.inFlight = new Semaphore( QUEUE_SIZE * 3 + workers * 2 );
+    this.parsing = new AtomicInteger( workers );
+    this.matching = new AtomicInteger( workers );
+  }
+
+
+  /*
+   * run()
+   *
+   * Runs every stage to the end, filling Match.results, and returns the
+   * listings that were kept; the listing numbers on the results lists
+   * are positions in it. If any stage fails, the others are stopped and
+   * its exception is thrown.
+   */
+  public List<ByteBuffer> run()
+  throws Exception
+  {
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    tasks.add( new Callable<Void>() {
+      public Void call()
+      throws Exception
+      {
+        read();
+        return null;
+      }
+    } );
+    for ( int w = 0; w < workers; w++ ) {
+      final ListingMatcher matcher = matchers.get( w );
+      tasks.add( new Callable<Void>() {
+        public Void call()
+        throws Exception
+        {
+          parse();
+          return null;
+        }
+      } );
+      tasks.add( new Callable<Void>() {
+        public Void call()
+        throws Exception
+        {
+          match( matcher );
+          return null;
+        }
+      } );
+    }
+    tasks.add( new Callable<Void>() {
+      public Void call()
+      throws Exception
+      {
+        collect();
+        return null;
+      }
+    } );
+
+    ExecutorService stages = Executors.newFixedThreadPool( tasks.size() );
+    CompletionService<Void> running =
+        new ExecutorCompletionService<Void>( stages );
+    for ( Callable<Void> task : tasks ) {
+      running.submit( task );
+    }
+    try {
+      // take the stages as they finish, so a failure is seen right away
+      for ( int stage = 0; stage < tasks.size(); stage++ ) {
+        running.take().get();
+      }
+    } catch ( ExecutionException e ) {
+      // a stage failed; the ones waiting on it would wait forever
+      stages.shutdownNow();
+      Throwable cause = e.getCause();
+      throw ( cause instanceof Exception ) ? (Exception) cause : e;
+    }
+    stages.shutdown();
+    return kept;
+  }
+
+
+  /*
+   * read()
+   *
+   * The read stage: packs the lines from the reader into batches. Each
+   * batch's lines go in chunks the size of the previous batch's lines,
+   * with a little to spare, so a batch mostly fits in one chunk that it
+   * mostly fills.
+   */
+  protected void read()
+  throws Exception
+  {
+    int index = 0;
+    Batch batch = new Batch( index, FIRST_CHUNK_SIZE );
+    ByteBuffer line;
+    while ( ( line = reader.readLine() ) != null ) {
+      batch.lines.add( line );
+      if ( batch.lines.size() == BATCH_SIZE ) {
+        inFlight.acquire();
+        toParse.put( batch );
+        batch = new Batch( ++index,
+            ByteArena.chunkSize( batch.lines.bytes() ) );
+      }
+    }
+    if ( batch.lines.size() > 0 ) {
+      inFlight.acquire();
+      toParse.put( batch );
+    }
+    toParse.put( END );
+  }
+
+
+  /*
+   * parse()
+   *
+   * A parse worker. A batch's titles are no longer than its lines, so
+   * its store's chunks are sized to the lines. END is put back for the
+   * other workers, and the last one to see it passes it on.
+   *
+   * Calls Match.parseListing()
+   */
+  protected void parse()
+  throws Exception
+  {
+    Batch batch;
+    while ( ( batch = toParse.take() ) != END ) {
+      batch.parsed = new ListingStore(
+          ByteArena.chunkSize( batch.lines.bytes() ) );
+      for ( int i = 0; i < batch.lines.size(); i++ ) {
+        Match.parseListing( batch.lines.get( i ), batch.parsed );
+      }
+      toMatch.put( batch );
+    }
+    toParse.put( END );
+    if ( parsing.decrementAndGet() == 0 ) {
+      toMatch.put( END );
+    }
+  }
+
+
+  /*
+   * match()
+   *
+   * A match worker, matching with its own matcher. Each distinct
+   * manufacturer in a batch is resolved once, through the (memoized)
+   * manufacturer resolver.
+   *
+   * Calls ListingMatcher.match()
+   */
+  protected void match( ListingMatcher matcher )
+  throws Exception
+  {
+    Batch batch;
+    while ( ( batch = toMatch.take() ) != END ) {
+      ListingStore parsed = batch.parsed;
+      int[][] manufacturerMatches = new int[ parsed.manufacturerCount() ][];
+      for ( int id = 0; id < manufacturerMatches.length; id++ ) {
+        manufacturerMatches[ id ] =
+            Match.resolver.resolve( parsed.manufacturer( id ) );
+      }
+      batch.ordinals = new int[ parsed.size() ][];
+      for ( int i = 0; i < parsed.size(); i++ ) {
+        batch.ordinals[i] = matcher.match( parsed, i,
+            manufacturerMatches[ parsed.manufacturerId( i ) ] );
+      }
+      toCollect.put( batch );
+    }
+    toMatch.put( END );
+    if ( matching.decrementAndGet() == 0 ) {
+      toCollect.put( END );
+    }
+  }
+
+
+  /*
+   * collect()
+   *
+   * The collect stage: takes the batches in the order they were read,
+   * keeps each listing that matched anything, and puts its number in the
+   * kept list on its products' results lists.
+   */
+  protected void collect()
+  throws Exception
+  {
+    HashMap<Integer,Batch> early = new HashMap<Integer,Batch>();
+    int next = 0;
+    Batch batch;
+    while ( ( batch = toCollect.take() ) != END ) {
+      early.put( batch.index, batch );
+      while ( ( batch = early.remove( next ) ) != null ) {
+        collect( batch );
+        inFlight.release();
+        next++;
+      }
+    }
+  }
+
+
+  protected void collect( Batch batch )
+  {
+    for ( int i = 0; i < batch.ordinals.length; i++ ) {
+      int[] ordinals = batch.ordinals[i];
+      if ( ordinals.length == 0 ) {
+        continue;
+      }
+      int n = kept.size();
+      kept.add( batch.lines.get( i ) );
+      for ( int k = 0; k < ordinals.length; k++ ) {
+        Match.results[ ordinals[k] ].push( n );
+      }
+    }
+  }
+
+
+  /*
+   * matchers()
+   *
+   * Returns the match workers' matchers, for their caches and counts.
+   */
+  public List<ListingMatcher> matchers()
+  {
+    return matchers;
+  }
+}
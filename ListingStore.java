@@ -0,0 +1,186 @@
+/*
+ * Listing store for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Holds the parsed fields of every listing in columns instead of one
+ * object per listing:
+ *   titles          normalized, packed as UTF-8 into one ByteArena
+ *   manufacturers   an id per listing into a dictionary of the distinct
+ *                   normalized manufacturer names
+ * Only the fields that matching uses are kept; the rest of a listing is
+ * copied into the results from its raw bytes.
+ * A listing costs its title's bytes plus an int, and the
+ * manufacturer of a listing is a small int, so anything worked out from
+ * a manufacturer name can be worked out once per distinct name.
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+public class ListingStore
+{
+  // the id of a missing manufacturer
+  public static final int NONE = -1;
+
+  protected ByteArena titles;
+  protected int[] manufacturerIds = new int[ 1024 ];
+  protected int size = 0;
+
+  protected Dictionary manufacturers = new Dictionary();
+
+
+  /*
+   * Numbers a set of distinct strings in the order they're first seen.
+   */
+  protected static class Dictionary
+  {
+    protected List<String> strings = new ArrayList<String>();
+    protected HashMap<String,Integer> ids = new HashMap<String,Integer>();
+
+    public int id( String s )
+    {
+      if ( s == null ) {
+        return NONE;
+      }
+      Integer id = ids.get( s );
+      if ( id == null ) {
+        id = strings.size();
+        ids.put( s, id );
+        strings.add( s );
+      }
+      return id;
+    }
+
+    public String get( int id )
+    {
+      return ( id == NONE ) ? null : strings.get( id );
+    }
+
+    public int size()
+    {
+      return strings.size();
+    }
+  }
+
+
+  public ListingStore()
+  {
+    this( ByteArena.CHUNK_SIZE );
+  }
+
+
+  /*
+   * A store whose titles go in chunks of chunkSize bytes, for when it
+   * will only ever hold a few listings.
+   */
+  public ListingStore( int chunkSize )
+  {
+    this.titles = new ByteArena( chunkSize );
+  }
+
+
+  /*
+   * add()
+   *
+   * Adds a listing to the end of the store. The manufacturer may be
+   * null.
+   */
+  public void add( String title, String manufacturer )
+  {
+    if ( size == manufacturerIds.length ) {
+      grow();
+    }
+    byte[] bytes = title.getBytes( StandardCharsets.UTF_8 );
+    titles.add( bytes, 0, bytes.length );
+    manufacturerIds[ size ] = manufacturers.id( manufacturer );
+    size++;
+  }
+
+
+  /*
+   * addAll()
+   *
+   * Adds every listing in other to the end of the store, in order.
+   * Ids are translated into this store's dictionaries once per distinct
+   * string, not once per listing.
+   */
+  public void addAll( ListingStore other )
+  {
+    int[] manufacturerMap = new int[ other.manufacturers.size() ];
+    for ( int id = 0; id < manufacturerMap.length; id++ ) {
+      manufacturerMap[ id ] = manufacturers.id( other.manufacturers.get( id ) );
+    }
+
+    for ( int i = 0; i < other.size; i++ ) {
+      if ( size == manufacturerIds.length ) {
+        grow();
+      }
+      titles.add( other.titles.get( i ) );
+      int m = other.manufacturerIds[ i ];
+      manufacturerIds[ size ] = ( m == NONE ) ? NONE : manufacturerMap[ m ];
+      size++;
+    }
+  }
+
+
+  protected void grow()
+  {
+    manufacturerIds = Arrays.copyOf( manufacturerIds, size * 2 );
+  }
+
+
+  public int size()
+  {
+    return size;
+  }
+
+
+  /*
+   * title()
+   *
+   * Returns the normalized title of listing i.
+   */
+  public String title( int i )
+  {
+    return titles.string( i );
+  }
+
+
+  /*
+   * titleBytes()
+   *
+   * Returns the normalized title of listing i as the UTF-8 bytes it's
+   * stored as, without decoding it.
+   */
+  public ByteBuffer titleBytes( int i )
+  {
+    return titles.get( i );
+  }
+
+
+  public int manufacturerId( int i )
+  {
+    return manufacturerIds[ i ];
+  }
+
+
+  /*
+   * manufacturer()
+   *
+   * Returns the normalized manufacturer name with the given id.
+   */
+  public String manufacturer( int id )
+  {
+    return manufacturers.get( id );
+  }
+
+
+  public int manufacturerCount()
+  {
+    return manufacturers.size();
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Manufacturer resolver for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Works out which catalog manufacturers a listing's manufacturer refers
+ * to. A listing manufacturer matches every catalog manufacturer whose
+ * name it contains (so "canon canada" matches "canon"), and every one
+ * that an alias it contains stands for (so with the alias
+ * "fuji = fujifilm", "fuji photo" matches "fujifilm").
+ *
+ * Listing manufacturers repeat heavily, so each distinct one is only
+ * resolved once; after that it's a single hash lookup. The pipeline's
+ * match workers share one resolver, so its methods are synchronized.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+public class ManufacturerResolver
+{
+  // the catalog manufacturers, by index
+  protected String[] manufacturers;
+  // each alias, and the index of the manufacturer it stands for
+  protected List<String> aliases = new ArrayList<String>();
+  protected IntStack aliasTargets = new IntStack();
+  // everything resolved so far
+  protected HashMap<String,int[]> resolved = new HashMap<String,int[]>();
+
+
+  public ManufacturerResolver( String[] manufacturers )
+  {
+    this.manufacturers = manufacturers;
+  }
+
+
+  /*
+   * addAlias()
+   *
+   * Makes alias stand for the catalog manufacturer named manufacturer.
+   * Both are expected to be normalized already. Returns false (and adds
+   * nothing) if there's no such manufacturer in the catalog.
+   */
+  public synchronized boolean addAlias( String alias, String manufacturer )
+  {
+    for ( int m = 0; m < manufacturers.length; m++ ) {
+      if ( manufacturers[m].equals( manufacturer ) ) {
+        aliases.add( alias );
+        aliasTargets.push( m );
+        // anything resolved before may have changed
+        resolved.clear();
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+  /*
+   * resolve()
+   *
+   * Returns the indexes of the catalog manufacturers that
+   * listingManufacturer matches, in increasing order.
+   * The array is shared with later calls, so it mustn't be changed.
+   */
+  public synchronized int[] resolve( String listingManufacturer )
+  {
+    int[] matches = resolved.get( listingManufacturer );
+    if ( matches != null ) {
+      return matches;
+    }
+
+    boolean[] match = new boolean[ manufacturers.length ];
+    for ( int m = 0; m < manufacturers.length; m++ ) {
+      match[m] = listingManufacturer.contains( manufacturers[m] );
+    }
+    for ( int a = 0; a < aliases.size(); a++ ) {
+      if ( listingManufacturer.contains( aliases.get( a ) ) ) {
+        match[ aliasTargets.get( a ) ] = true;
+      }
+    }
+
+    IntStack found = new IntStack();
+    for ( int m = 0; m < match.length; m++ ) {
+      if ( match[m] ) {
+        found.push( m );
+      }
+    }
+    matches = found.toArray();
+    resolved.put( listingManufacturer, matches );
+    return matches;
+  }
+}
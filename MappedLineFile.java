@@ -0,0 +1,268 @@
+/*
+ * Memory-mapped line file for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Maps a file of newline-delimited records (one JSON object per line)
+ * into memory and finds the record boundaries at the byte level.
+ * Only the position of each record is kept on the heap; a record is
+ * handed out as a slice of the mapping, without being copied or decoded,
+ * so the file can be much bigger than the heap.
+ *
+ * Files bigger than a single mapping are mapped in segments, each ending
+ * on a newline so that no record is split between two segments.
+ * Given a thread pool, each segment is split again into byte ranges that
+ * start just after a newline, and the ranges are scanned in parallel.
+ */
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+public class MappedLineFile extends AbstractList<ByteBuffer>
+{
+  public static final long SEGMENT_SIZE = 1L << 30;
+
+  protected FileChannel channel;
+
+  // segment k maps the file from segmentBase[k]
+  protected MappedByteBuffer[] segments = new MappedByteBuffer[ 0 ];
+  protected long[] segmentBase = new long[ 0 ];
+
+  // record i is the bytes [ offset[i], offset[i] + length[i] ) of the file
+  protected long[] offset = new long[ 1024 ];
+  protected int[] length = new int[ 1024 ];
+  protected int size = 0;
+
+
+  public MappedLineFile( String path )
+  throws IOException
+  {
+    this( path, null, 1 );
+  }
+
+
+  /*
+   * Maps the file at path, splitting each segment into the given number
+   * of ranges that are scanned for records on pool.
+   */
+  public MappedLineFile( String path, ExecutorService pool, int ranges )
+  throws IOException
+  {
+    this.channel = new RandomAccessFile( path, "r" ).getChannel();
+
+    long fileSize = channel.size();
+    long base = 0;
+    while ( base < fileSize ) {
+      long mapSize = Math.min( SEGMENT_SIZE, fileSize - base );
+      MappedByteBuffer segment =
+          channel.map( FileChannel.MapMode.READ_ONLY, base, mapSize );
+      int end = (int) mapSize;
+      if ( base + mapSize < fileSize ) {
+        // end the segment after its last newline;
+        // the next segment picks up the partial record
+        while ( end > 0 && segment.get( end - 1 ) != '\n' ) {
+          end--;
+        }
+        if ( end == 0 ) {
+          throw new IOException( path + ": line at byte " + base
+              + " is longer than " + SEGMENT_SIZE + " bytes" );
+        }
+      }
+      addSegment( segment, base );
+      if ( pool == null || ranges < 2 ) {
+        indexRecords( segment, base, 0, end );
+      } else {
+        indexRecords( segment, base, end, pool, ranges );
+      }
+      base += end;
+    }
+  }
+
+
+  /*
+   * indexRecords()
+   *
+   * Scans bytes [start, end) of segment for newlines, recording the
+   * position of every non-blank line, trimmed of surrounding whitespace.
+   * start must be the beginning of a line.
+   */
+  protected void indexRecords( MappedByteBuffer segment, long base,
+      int start, int end )
+  {
+    int lineStart = start;
+    while ( lineStart < end ) {
+      int lineEnd = lineStart;
+      while ( lineEnd < end && segment.get( lineEnd ) != '\n' ) {
+        lineEnd++;
+      }
+      int next = lineEnd + 1;
+
+      // trim the line, the same way LineReader does
+      while ( lineStart < lineEnd
+          && ( segment.get( lineStart ) & 0xff ) <= ' ' ) {
+        lineStart++;
+      }
+      while ( lineEnd > lineStart
+          && ( segment.get( lineEnd - 1 ) & 0xff ) <= ' ' ) {
+        lineEnd--;
+      }
+      if ( lineStart < lineEnd ) {
+        addRecord( base + lineStart, lineEnd - lineStart );
+      }
+      lineStart = next;
+    }
+  }
+
+
+  /*
+   * indexRecords()
+   *
+   * Splits bytes [0, end) of segment into ranges that each begin on a new
+   * line, and indexes the ranges in parallel on pool. Each range records
+   * into its own MappedLineFile, and the ranges are appended in order, so
+   * the records come out in the same order as a sequential scan.
+   */
+  protected void indexRecords( final MappedByteBuffer segment,
+      final long base, int end, ExecutorService pool, int ranges )
+  throws IOException
+  {
+    // find the range boundaries, moving each one past the next newline
+    int[] bound = new int[ ranges + 1 ];
+    bound[ ranges ] = end;
+    for ( int r = 1; r < ranges; r++ ) {
+      int b = Math.max( (int) ( (long) end * r / ranges ), bound[ r - 1 ] );
+      while ( b < end && b > 0 && segment.get( b - 1 ) != '\n' ) {
+        b++;
+      }
+      bound[ r ] = b;
+    }
+
+    List<Future<MappedLineFile>> parts =
+        new ArrayList<Future<MappedLineFile>>();
+    for ( int r = 0; r < ranges; r++ ) {
+      final int from = bound[ r ];
+      final int to = bound[ r + 1 ];
+      parts.add( pool.submit( new Callable<MappedLineFile>() {
+        public MappedLineFile call()
+        {
+          MappedLineFile part = new MappedLineFile();
+          part.indexRecords( segment, base, from, to );
+          return part;
+        }
+      } ) );
+    }
+
+    try {
+      for ( Future<MappedLineFile> f : parts ) {
+        MappedLineFile part = f.get();
+        for ( int i = 0; i < part.size; i++ ) {
+          addRecord( part.offset[ i ], part.length[ i ] );
+        }
+      }
+    } catch ( Exception e ) {
+      throw new IOException( "indexing failed", e );
+    }
+  }
+
+
+  /*
+   * An empty, unmapped file that only collects records;
+   * used for the ranges of a parallel scan.
+   */
+  protected MappedLineFile()
+  {
+  }
+
+
+  protected void addSegment( MappedByteBuffer segment, long base )
+  {
+    int n = segments.length;
+    segments = Arrays.copyOf( segments, n + 1 );
+    segmentBase = Arrays.copyOf( segmentBase, n + 1 );
+    segments[ n ] = segment;
+    segmentBase[ n ] = base;
+  }
+
+
+  protected void addRecord( long recordOffset, int recordLength )
+  {
+    if ( size == offset.length ) {
+      offset = Arrays.copyOf( offset, size * 2 );
+      length = Arrays.copyOf( length, size * 2 );
+    }
+    offset[ size ] = recordOffset;
+    length[ size ] = recordLength;
+    size++;
+  }
+
+
+  /*
+   * segmentOf()
+   *
+   * Returns the index of the segment that holds the file offset pos.
+   */
+  protected int segmentOf( long pos )
+  {
+    int k = segments.length - 1;
+    while ( segmentBase[ k ] > pos ) {
+      k--;
+    }
+    return k;
+  }
+
+
+  /*
+   * get()
+   *
+   * Returns the raw bytes of record i, without copying or decoding them.
+   */
+  public ByteBuffer get( int i )
+  {
+    if ( i < 0 || i >= size ) {
+      throw new IndexOutOfBoundsException( "record " + i + " of " + size );
+    }
+    int k = segmentOf( offset[ i ] );
+    return segments[ k ].slice( (int) ( offset[ i ] - segmentBase[ k ] ),
+        length[ i ] );
+  }
+
+
+  public int size()
+  {
+    return size;
+  }
+
+
+  public long offset( int i )
+  {
+    return offset[ i ];
+  }
+
+
+  public int length( int i )
+  {
+    return length[ i ];
+  }
+
+
+  /*
+   * close()
+   *
+   * Closes the underlying file. The mapping itself stays valid until
+   * the segments are garbage collected.
+   */
+  public void close()
+  throws IOException
+  {
+    channel.close();
+  }
+}
@@ -7,13 +7,31 @@
  * As products are read, they are grouped by manufacturer.
  * As each listing is read, it is matched by manufacturer, then
  * by product family (if present), and finally the model.
+ * Products are read straight into Product records, and listings into
+ * the columns of a ListingStore. Each product's matches are kept at its
+ * ordinal in an array, so matching never looks anything up by name.
+ * Every model and family in the catalog is found in a title in a single
+ * pass, by an Aho-Corasick automaton, and only the products whose model
+ * turned up are checked any further. (Optionally, candidates come from an
+ * inverted index of title tokens instead.)
  */
 
 import java.util.Stack;
-import java.util.Iterator;
 import java.util.HashMap;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 //import java.text.Normalizer;
 
 import org.json.*;
@@ -31,77 +49,170 @@ public class Match
   public static final String LISTING_CURRENCY = "currency";
   public static final String LISTING_PRICE = "price";
 
+  // the only fields that are read from each line;
+  // everything else is skipped by the parser
+  public static final String[] PRODUCT_FIELDS = { PRODUCT_NAME,
+      PRODUCT_MANUFACTURER, PRODUCT_FAMILY, PRODUCT_MODEL };
+  public static final String[] LISTING_FIELDS = { LISTING_TITLE,
+      LISTING_MANUFACTURER };
+  // where each of those fields is put by JSONObject.readFields()
+  protected static final int NAME = 0;
+  protected static final int MANUFACTURER = 1;
+  protected static final int FAMILY = 2;
+  protected static final int MODEL = 3;
+  protected static final int TITLE = 0;
+
   public static final String PRODUCT_FILE = "products.txt";
   public static final String LISTING_FILE = "listings.txt";
   public static final String RESULT_FILE = "results.txt";
 
-  protected static HashMap<String,Stack<JSONObject>> resultsMap =
-      new HashMap<String,Stack<JSONObject>>();
-  protected static HashMap<String,Stack<JSONObject>> manufacturerMap =
-      new HashMap<String,Stack<JSONObject>>();
-  protected static Stack<String> listingStack = new Stack<String>();
+  // product names, indexed by ordinal
+  protected static List<String> productNames = new ArrayList<String>();
+  // the listing numbers matched by each product, indexed by ordinal
+  protected static IntStack[] results;
+  // each manufacturer, and the products that it produces
+  protected static String[] manufacturers;
+  // (from a catalog snapshot, only made when an option needs them)
+  protected static Product[][] manufacturerProducts;
+  // each listing is kept as its raw UTF-8 bytes
+  protected static List<ByteBuffer> listingStack = new ByteArena();
+  // the parsed fields of every listing, in listing order
+  protected static ListingStore listings;
+  // resolves a listing's manufacturer to catalog manufacturers
+  protected static ManufacturerResolver resolver;
+  // for each listing manufacturer id, the indexes of the manufacturers
+  // it matches
+  protected static int[][] manufacturerMatches;
+
+  // the automaton over every distinct model and family, and the
+  // product tables that listings are matched through
+  protected static ProductIndex productIndex;
+  // finds candidate products by title tokens, when used instead
+  protected static TokenIndex tokenIndex = null;
+  // finds models spelled with other separators, if it's to be used
+  protected static VariantIndex variantIndex = null;
+  // per manufacturer, turns away titles that can't match its products
+  protected static ModelFilter[] manufacturerFilters = null;
+  protected static ModelFilter.Stats filterStats = new ModelFilter.Stats();
+  // the match caches of the matchers used, for the statistics
+  protected static List<MatchCache> matchCaches = new ArrayList<MatchCache>();
+  protected static MappedLineFile listingFile = null;
+
+  // command-line options
+  protected static boolean mapListings = false;
+  protected static int threads = 1;
+  // the product catalog snapshot to start from, if any
+  protected static String catalogPath = null;
+  // write the snapshot and stop, without matching anything
+  protected static boolean compileOnly = false;
+  // find candidates with the token index rather than the automaton
+  protected static boolean useTokenIndex = false;
+  // a file of manufacturer aliases, if any
+  protected static String aliasPath = null;
+  // stream the listings through the staged pipeline
+  protected static boolean pipeline = false;
+  // match one manufacturer's listings at a time
+  protected static boolean partition = false;
+  // also match models spelled with other separators
+  protected static boolean useVariants = false;
+  // turn away titles with the model filters before matching them
+  protected static boolean useFilters = false;
+  // the number of titles to remember the matches of (0 for none)
+  protected static int cacheSize = MatchCache.DEFAULT_CAPACITY;
+  // whether -cache was given
+  protected static boolean cacheGiven = false;
+
+  // runs the parallel stages when threads > 1
+  protected static ExecutorService pool = null;
 
 
+  /*
+   * normalizeString()
+   *
+   * Normalizes a single field value for matching.
+   * Fields aren't trimmed: whole lines used to be normalized, so
+   * whitespace inside a value (e.g. a family of "Cybershot ") has always
+   * been part of the match.
+   */
   protected static String normalizeString( String s )
   {
     // replace non-english characters?
     /*String t = Normalizer.normalize( s, Normalizer.Form.NFD );
-    // put the string to lowercase and remove excess whitespace
-    t = t.toLowerCase().trim();
+    // put the string to lowercase
+    t = t.toLowerCase();
     // remove non-alphanumeric characters?
-    //t = t.replaceAll( "[^a-z0-9\":{}, ]", "" );
+    //t = t.replaceAll( "[^a-z0-9 ]", "" );
     return t;*/
-    return s.toLowerCase().trim();
+    return s.toLowerCase();
   }
 
 
   /*
    * processProductFile()
    *
-   * Reads product strings from r, expecting one JSON object per line.
-   * Normalizes all strings and converts the strings to JSONObjects.
-   * Fills the manufacturerMap, which maps a manufacturer name to
-   * the list of products that the manufacturer produces.
-   * Also initializes the resultsMap with each product name mapping to
-   * an empty list.
+   * Reads product strings from r, one JSON object per line.
+   * Each string is read straight into a Product, with the fields used for
+   * matching normalized, and its model matcher built once, up front.
+   * Each distinct product name gets the next ordinal.
+   * Fills the manufacturers and manufacturerProducts arrays, which list
+   * each manufacturer name and the products that the manufacturer
+   * produces.
    *
-   * Calls normalizeString()
+   * Calls stringField(), normalizeString()
    */
-  protected static void processProductFile( FileReader r )
+  protected static void processProductFile( LineReader r )
   {
     try {
-      // create a JSONTokener to read r
-      JSONTokener tokener = new JSONTokener( r );
-      while ( tokener.more() ) {
-        // get the next line
-        String str = tokener.nextTo( '\n' );
-        // discard the newline
-        tokener.next();
-        // normalize the string
-        String con = normalizeString( str );
-
-        // create JSONObjects from both the normalized and original strings
-        JSONObject product = new JSONObject( con );
-        // set the PRODUCT_NAME of the normalized object to the original name,
-        // because we want the original, non-normalized name in the output and
-        // it's not needed for processing
-        String name = new JSONObject( str ).getString( PRODUCT_NAME );
-        product.put( PRODUCT_NAME, name );
-        resultsMap.put( name, new Stack<JSONObject>() );
+      // these are only needed while reading;
+      // matching goes through the arrays they're turned into
+      HashMap<String,Integer> ordinals = new HashMap<String,Integer>();
+      LinkedHashMap<String,Stack<Product>> manufacturerMap =
+          new LinkedHashMap<String,Stack<Product>>();
+      Object[] values = new Object[ PRODUCT_FIELDS.length ];
+
+      ByteBuffer line;
+      while ( ( line = r.readLine() ) != null ) {
+        JSONObject.readFields( new UTF8JSONTokener( line ), PRODUCT_FIELDS,
+            values );
+        // PRODUCT_NAME keeps its original value because we want the
+        // original, non-normalized name in the output
+        String name = stringField( values, PRODUCT_FIELDS, NAME );
+        Integer ordinal = ordinals.get( name );
+        if ( ordinal == null ) {
+          ordinal = productNames.size();
+          ordinals.put( name, ordinal );
+          productNames.add( name );
+        }
+        String family = null;
+        if ( values[ FAMILY ] != null ) {
+          family = normalizeString(
+              stringField( values, PRODUCT_FIELDS, FAMILY ) );
+        }
+        Product product = new Product( ordinal, name,
+            normalizeString( stringField( values, PRODUCT_FIELDS,
+                MANUFACTURER ) ),
+            family,
+            normalizeString( stringField( values, PRODUCT_FIELDS, MODEL ) ) );
 
         // put the product on the appropriate manufacturer stack
-        String manufacturer = product.getString( PRODUCT_MANUFACTURER );
-        if ( !manufacturerMap.containsKey( manufacturer ) ) {
+        Stack<Product> s = manufacturerMap.get( product.manufacturer );
+        if ( s == null ) {
           // first time encountering this manufacturer;
-          // create a new stack containing the product
-          // and map the manufacturer to it
-          Stack<JSONObject> s = new Stack<JSONObject>();
-          s.push( product );
-          manufacturerMap.put( manufacturer, s );
-        } else {
-          // put the product in the manufacturer's map
-          manufacturerMap.get( manufacturer ).push( product );
+          // create a new stack and map the manufacturer to it
+          s = new Stack<Product>();
+          manufacturerMap.put( product.manufacturer, s );
         }
+        s.push( product );
+      }
+
+      manufacturers = new String[ manufacturerMap.size() ];
+      manufacturerProducts = new Product[ manufacturerMap.size() ][];
+      int m = 0;
+      for ( String manufacturer : manufacturerMap.keySet() ) {
+        manufacturers[m] = manufacturer;
+        manufacturerProducts[m] =
+            manufacturerMap.get( manufacturer ).toArray( new Product[ 0 ] );
+        m++;
       }
     } catch ( Exception e ) {
       handleException( e );
@@ -109,6 +220,115 @@ public class Match
   }
 
 
+  /*
+   * stringField()
+   *
+   * Returns the string in values[i], as read by JSONObject.readFields(),
+   * failing the same way JSONObject.getString() would if it's missing or
+   * isn't a string.
+   */
+  protected static String stringField( Object[] values, String[] names,
+      int i )
+  throws JSONException
+  {
+    if ( values[i] == null ) {
+      throw new JSONException( "JSONObject[" + JSONObject.quote( names[i] )
+          + "] not found." );
+    }
+    if ( !( values[i] instanceof String ) ) {
+      throw new JSONException( "JSONObject[" + JSONObject.quote( names[i] )
+          + "] not a string." );
+    }
+    return (String) values[i];
+  }
+
+
+  /*
+   * readCatalog()
+   *
+   * Builds the product index, from the catalog snapshot if one was given
+   * and it's up to date, and otherwise from the product file, in which
+   * case a snapshot is (re)written for the next run. From a snapshot,
+   * the index is matched through where it's mapped, and the products
+   * themselves are only made if an option needs them.
+   * Then sets up an empty list of listing numbers for each product name.
+   *
+   * Calls inputFile(), openInput(), processProductFile(), needsProducts()
+   */
+  protected static void readCatalog()
+  throws IOException
+  {
+    File productPath = inputFile( PRODUCT_FILE );
+    CatalogSnapshot snapshot = null;
+    if ( catalogPath != null && !compileOnly ) {
+      snapshot = CatalogSnapshot.map( catalogPath, productPath );
+    }
+
+    if ( snapshot != null ) {
+      productNames = snapshot.productNames;
+      manufacturers = snapshot.manufacturers;
+      productIndex = snapshot.productIndex;
+      if ( needsProducts() ) {
+        manufacturerProducts = snapshot.products();
+      }
+    } else {
+      if ( catalogPath != null && !compileOnly ) {
+        System.err.println( catalogPath + " is missing or out of date; "
+            + "rebuilding it from " + productPath + "." );
+      }
+      LineReader productReader = new LineReader( openInput( productPath ) );
+      processProductFile( productReader );
+      productReader.close();
+      productIndex = new ProductIndex( manufacturerProducts );
+      if ( catalogPath != null ) {
+        CatalogSnapshot.write( catalogPath, productPath, productNames,
+            manufacturers, manufacturerProducts, productIndex );
+      }
+    }
+
+    results = new IntStack[ productNames.size() ];
+    for ( int i = 0; i < results.length; i++ ) {
+      results[i] = new IntStack();
+    }
+  }
+
+
+  /*
+   * needsProducts()
+   *
+   * Whether the options need the Product records, and not just the
+   * product index: the token and variant indexes and the model filters
+   * are built from them, and -partition matches with them.
+   */
+  protected static boolean needsProducts()
+  {
+    return useTokenIndex || useVariants || useFilters || partition;
+  }
+
+
+  /*
+   * buildIndexes()
+   *
+   * Builds the token index, the variant index and the model filters, if
+   * they're to be used.
+   */
+  protected static void buildIndexes()
+  {
+    if ( useTokenIndex ) {
+      tokenIndex = new TokenIndex( manufacturerProducts );
+    }
+    if ( useVariants ) {
+      variantIndex = new VariantIndex( manufacturerProducts );
+    }
+    if ( useFilters ) {
+      manufacturerFilters = new ModelFilter[ manufacturerProducts.length ];
+      for ( int m = 0; m < manufacturerProducts.length; m++ ) {
+        manufacturerFilters[m] = new ModelFilter( manufacturerProducts[m] );
+      }
+    }
+  }
+
+
   /*
    * familyAndModelMatch()
    *
@@ -117,26 +337,23 @@ public class Match
    * the listing must contain the family and must match the WORD-BOUNDED
    * model.
    * If there is no family, then the listing must only contain the model.
-   * If a complete match is made, then the original listing is added to
-   * the product's result list.
+   * Either way the model is found by the product's prebuilt matcher,
+   * which takes the model literally.
    */
-  protected static boolean familyAndModelMatch( JSONObject product,
+  protected static boolean familyAndModelMatch( Product product,
       String title )
-  throws JSONException
   {
     boolean result = false;
-    String model = product.getString( PRODUCT_MODEL );
 
     // check whether the product has a family
-    if ( product.has( PRODUCT_FAMILY ) ) {
-      String family = product.getString( PRODUCT_FAMILY );
+    if ( product.family != null ) {
       // since there is a family, the model must match with word boundaries
-      String pattern = ".*\\b" + model + "\\b.*";
-      if ( title.contains( family ) && title.matches( pattern ) ) {
+      if ( title.contains( product.family )
+          && product.modelMatcher.matches( title ) ) {
         result = true;
       }
     // no family, so do a simple contains match
-    } else if ( title.contains( model ) ) {
+    } else if ( product.modelMatcher.matches( title ) ) {
       result = true;
     }
 
@@ -145,72 +362,412 @@ public class Match
 
 
   /*
-   * matchListing()
+   * parseListing()
+   *
+   * Parses the raw bytes of one listing and adds it to the end of store.
+   * Only the fields that matching uses are read, and both are
+   * normalized.
    *
-   * Takes a listing and iterates through manufacturers looking for a match
-   * (a simple "contains" matching).
-   * If a match is made, then iterate over that manufacturer's products,
-   * calling familyAndModelMatch() with the listing for each.
-   * 
-   * Calls familyAndModelMatch()
+   * Calls stringField(), normalizeString()
    */
-  protected static void matchListing( String listingStr )
+  protected static void parseListing( ByteBuffer listingBytes,
+      ListingStore store )
   throws JSONException
   {
-    // create a JSON object for the original listing (for results output)
-    JSONObject originalListing = new JSONObject( listingStr );
-    // normalize and create a JSON object for matching
-    String con = normalizeString( listingStr );
-    JSONObject listing = new JSONObject( con );
-    String title = listing.getString( LISTING_TITLE );
-    String listingManufacturer = listing.getString( LISTING_MANUFACTURER );
-
-    // loop through all manufacturers
-    Iterator manufacturerIterator = manufacturerMap.keySet().iterator();
-    while ( manufacturerIterator.hasNext() ) {
-      String manufacturer = (String) manufacturerIterator.next();
-      // check for a manufacturer match
-      if ( listingManufacturer.contains( manufacturer ) ) {
-        // manufacturer matches, so check family/model
-        Stack<JSONObject> s = (Stack<JSONObject>)
-            manufacturerMap.get( manufacturer );
-        // loop through all products by that manufacturer
-        Iterator productIterator = s.iterator();
-        while ( productIterator.hasNext() ) {
-          JSONObject product = (JSONObject) productIterator.next();
-          if ( familyAndModelMatch( product, title ) ) {
-            // it's a match!
-            // put the (original) listing on the product's results list
-            String name = product.getString( PRODUCT_NAME );
-            resultsMap.get( name ).push( originalListing );
-            // assume that a listing can only match one product;
-            // we had a match, so stop looping through products
-            break;
+    Object[] values = new Object[ LISTING_FIELDS.length ];
+    JSONObject.readFields( new UTF8JSONTokener( listingBytes ),
+        LISTING_FIELDS, values );
+    store.add(
+        normalizeString( stringField( values, LISTING_FIELDS, TITLE ) ),
+        normalizeString( stringField( values, LISTING_FIELDS,
+            MANUFACTURER ) ) );
+  }
+
+
+  /*
+   * parseListings()
+   *
+   * Parses every listing on the listing stack into a ListingStore.
+   * With more than one thread, the listings are split into one contiguous
+   * range per thread; each range is parsed into its own store, and the
+   * stores are appended together in range order, so listing n always ends
+   * up at index n. A range's store only holds that range's titles, so
+   * its chunks are sized to the range's lines.
+   *
+   * Calls parseListing()
+   */
+  protected static ListingStore parseListings()
+  throws Exception
+  {
+    final int size = listingStack.size();
+    ListingStore store = new ListingStore();
+    if ( threads == 1 ) {
+      for ( int i = 0; i < size; i++ ) {
+        parseListing( listingStack.get( i ), store );
+      }
+      return store;
+    }
+
+    List<Future<ListingStore>> parts = new ArrayList<Future<ListingStore>>();
+    for ( int r = 0; r < threads; r++ ) {
+      final int from = (int) ( (long) size * r / threads );
+      final int to = (int) ( (long) size * ( r + 1 ) / threads );
+      parts.add( pool.submit( new Callable<ListingStore>() {
+        public ListingStore call()
+        throws JSONException
+        {
+          long bytes = 0;
+          for ( int i = from; i < to; i++ ) {
+            bytes += listingStack.get( i ).remaining();
           }
+          ListingStore part = new ListingStore( ByteArena.chunkSize( bytes ) );
+          for ( int i = from; i < to; i++ ) {
+            parseListing( listingStack.get( i ), part );
+          }
+          return part;
         }
+      } ) );
+    }
+
+    for ( Future<ListingStore> f : parts ) {
+      store.addAll( f.get() );
+    }
+    return store;
+  }
+
+
+  /*
+   * readAliases()
+   *
+   * Sets up the manufacturer resolver, with the aliases from the alias
+   * file if there is one. Each line of the file is
+   *   alias = manufacturer
+   * where manufacturer is a catalog manufacturer name. Blank lines and
+   * lines starting with '#' are ignored.
+   *
+   * Calls normalizeString()
+   */
+  protected static void readAliases()
+  throws IOException
+  {
+    resolver = new ManufacturerResolver( manufacturers );
+    if ( aliasPath == null ) {
+      return;
+    }
+
+    LineReader r = new LineReader( openInput( new File( aliasPath ) ) );
+    ByteBuffer line;
+    while ( ( line = r.readLine() ) != null ) {
+      String s = StandardCharsets.UTF_8.decode( line ).toString();
+      if ( s.startsWith( "#" ) ) {
+        continue;
+      }
+      int equals = s.indexOf( '=' );
+      if ( equals < 0 ) {
+        throw new IOException( aliasPath + ": expected alias = manufacturer, "
+            + "not: " + s );
+      }
+      String alias = normalizeString( s.substring( 0, equals ).trim() );
+      String manufacturer =
+          normalizeString( s.substring( equals + 1 ).trim() );
+      if ( !resolver.addAlias( alias, manufacturer ) ) {
+        System.err.println( aliasPath + ": no manufacturer \"" + manufacturer
+            + "\" in the catalog; ignoring alias \"" + alias + "\"." );
       }
     }
+    r.close();
+  }
+
+
+  /*
+   * matchManufacturers()
+   *
+   * Resolves each distinct listing manufacturer to the manufacturers it
+   * matches, so that it's done once per name rather than once per
+   * listing.
+   */
+  protected static void matchManufacturers()
+  {
+    manufacturerMatches = new int[ listings.manufacturerCount() ][];
+    for ( int id = 0; id < manufacturerMatches.length; id++ ) {
+      manufacturerMatches[ id ] =
+          resolver.resolve( listings.manufacturer( id ) );
+    }
+  }
+
+
+  /*
+   * matchListings()
+   *
+   * Matches every listing in the listing store, putting each listing's
+   * number on the results list of every product it matches.
+   * With more than one thread, the listings are split into one contiguous
+   * range per thread, and each range is matched by its own
+   * ListingMatcher, which shares the product index but nothing else.
+   * A range collects its matches as (ordinal, listing number) pairs, and
+   * the ranges are added to the results in range order, so every results
+   * list comes out in listing order, exactly as a single-threaded run
+   * would leave it.
+   *
+   * Calls ListingMatcher.match()
+   */
+  protected static void matchListings()
+  throws Exception
+  {
+    final int size = listings.size();
+    if ( threads == 1 ) {
+      ListingMatcher matcher = new ListingMatcher( cacheSize );
+      for ( int n = 0; n < size; n++ ) {
+        int[] ordinals = matcher.match( n );
+        for ( int i = 0; i < ordinals.length; i++ ) {
+          results[ ordinals[i] ].push( n );
+        }
+      }
+      addStats( matcher );
+      return;
+    }
+
+    List<ListingMatcher> matchers = new ArrayList<ListingMatcher>();
+    List<Future<IntStack>> parts = new ArrayList<Future<IntStack>>();
+    for ( int r = 0; r < threads; r++ ) {
+      final int from = (int) ( (long) size * r / threads );
+      final int to = (int) ( (long) size * ( r + 1 ) / threads );
+      final ListingMatcher matcher = new ListingMatcher( cacheSize );
+      matchers.add( matcher );
+      parts.add( pool.submit( new Callable<IntStack>() {
+        public IntStack call()
+        {
+          IntStack pairs = new IntStack();
+          for ( int n = from; n < to; n++ ) {
+            int[] ordinals = matcher.match( n );
+            for ( int i = 0; i < ordinals.length; i++ ) {
+              pairs.push( ordinals[i] );
+              pairs.push( n );
+            }
+          }
+          return pairs;
+        }
+      } ) );
+    }
+
+    for ( Future<IntStack> f : parts ) {
+      IntStack pairs = f.get();
+      for ( int i = 0; i < pairs.size(); i += 2 ) {
+        results[ pairs.get( i ) ].push( pairs.get( i + 1 ) );
+      }
+    }
+    for ( ListingMatcher matcher : matchers ) {
+      addStats( matcher );
+    }
+  }
+
+
+  /*
+   * matchByManufacturer()
+   *
+   * Matches the listings in two phases, one catalog manufacturer at a
+   * time, instead of one listing at a time.
+   * First every listing is put in the bucket of each manufacturer that
+   * its manufacturer matches. Then each bucket is matched against only
+   * that manufacturer's products, as one task per manufacturer (on the
+   * pool, if there is one). A task finds all of its manufacturer's models
+   * in a title in one Shift-Or pass, then takes the first product, in
+   * order, that it found, which is what familyAndModelMatch() would pick
+   * (products the variant index finds in the title count as found, if
+   * their family is in the title). A title that the manufacturer's model
+   * filter turns away isn't checked at all. A task only reads shared
+   * data, and collects its matches in lists of its own, one per
+   * product.
+   * The lists are then put in the results; products that share a name
+   * (and so an ordinal) have their lists merged in listing order, so the
+   * results are the same as matching one listing at a time.
+   *
+   * Calls ShiftOrMatcher.scan(), merge()
+   */
+  protected static void matchByManufacturer()
+  throws Exception
+  {
+    // phase one: bucket the listing numbers by manufacturer
+    int size = listings.size();
+    int[] count = new int[ manufacturers.length ];
+    for ( int n = 0; n < size; n++ ) {
+      int[] matches = manufacturerMatches[ listings.manufacturerId( n ) ];
+      for ( int i = 0; i < matches.length; i++ ) {
+        count[ matches[i] ]++;
+      }
+    }
+    final int[][] buckets = new int[ manufacturers.length ][];
+    for ( int m = 0; m < buckets.length; m++ ) {
+      buckets[m] = new int[ count[m] ];
+      count[m] = 0;
+    }
+    for ( int n = 0; n < size; n++ ) {
+      int[] matches = manufacturerMatches[ listings.manufacturerId( n ) ];
+      for ( int i = 0; i < matches.length; i++ ) {
+        buckets[ matches[i] ][ count[ matches[i] ]++ ] = n;
+      }
+    }
+
+    // phase two: match each bucket against its own products
+    List<Callable<IntStack[]>> tasks = new ArrayList<Callable<IntStack[]>>();
+    for ( int m = 0; m < buckets.length; m++ ) {
+      final int[] bucket = buckets[m];
+      final Product[] products = manufacturerProducts[m];
+      final int manufacturer = m;
+      tasks.add( new Callable<IntStack[]>() {
+        public IntStack[] call()
+        {
+          IntStack[] local = new IntStack[ products.length ];
+          for ( int p = 0; p < local.length; p++ ) {
+            local[p] = new IntStack();
+          }
+          ShiftOrMatcher models = new ShiftOrMatcher( products );
+          boolean[] found = new boolean[ products.length ];
+          StringBuilder key = new StringBuilder();
+          IntStack variants = new IntStack();
+          ModelFilter filter = ( manufacturerFilters == null )
+              ? null : manufacturerFilters[ manufacturer ];
+          ModelFilter.Stats stats = new ModelFilter.Stats();
+          for ( int i = 0; i < bucket.length; i++ ) {
+            String title = listings.title( bucket[i] );
+            if ( filter != null ) {
+              stats.checks++;
+              if ( !filter.mightMatch( title ) ) {
+                stats.skips++;
+                continue;
+              }
+            }
+            models.scan( title, found );
+            if ( variantIndex != null ) {
+              variants.clear();
+              variantIndex.candidates( title, key, variants );
+              for ( int v = 0; v < variants.size(); v++ ) {
+                int q = variants.get( v );
+                int p = productIndex.productPosition.get( q );
+                if ( productIndex.productManufacturer.get( q ) == manufacturer
+                    && ShiftOrMatcher.familyIn( products[p], title ) ) {
+                  found[p] = true;
+                }
+              }
+            }
+            boolean matched = false;
+            for ( int p = 0; p < products.length && !matched; p++ ) {
+              if ( found[p] ) {
+                local[p].push( bucket[i] );
+                matched = true;
+              }
+            }
+            if ( filter != null && !matched ) {
+              stats.misses++;
+            }
+          }
+          filterStats.add( stats );
+          return local;
+        }
+      } );
+    }
+    List<IntStack[]> parts = new ArrayList<IntStack[]>();
+    if ( pool == null ) {
+      for ( Callable<IntStack[]> task : tasks ) {
+        parts.add( task.call() );
+      }
+    } else {
+      for ( Future<IntStack[]> f : pool.invokeAll( tasks ) ) {
+        parts.add( f.get() );
+      }
+    }
+
+    // put each product's list in the results
+    boolean[] filled = new boolean[ results.length ];
+    for ( int m = 0; m < parts.size(); m++ ) {
+      IntStack[] local = parts.get( m );
+      for ( int p = 0; p < local.length; p++ ) {
+        int ordinal = manufacturerProducts[m][p].ordinal;
+        results[ ordinal ] = filled[ ordinal ]
+            ? merge( results[ ordinal ], local[p] ) : local[p];
+        filled[ ordinal ] = true;
+      }
+    }
+  }
+
+
+  /*
+   * merge()
+   *
+   * Merges two lists of listing numbers that are each in order.
+   */
+  protected static IntStack merge( IntStack a, IntStack b )
+  {
+    IntStack merged = new IntStack( a.size() + b.size() );
+    int i = 0;
+    int j = 0;
+    while ( i < a.size() || j < b.size() ) {
+      if ( j == b.size() || ( i < a.size() && a.get( i ) <= b.get( j ) ) ) {
+        merged.push( a.get( i++ ) );
+      } else {
+        merged.push( b.get( j++ ) );
+      }
+    }
+    return merged;
+  }
+
+
+  /*
+   * addStats()
+   *
+   * Keeps the match cache of matcher, if it has one, and adds its model
+   * filter counts, for the run stats.
+   */
+  protected static void addStats( ListingMatcher matcher )
+  {
+    if ( matcher.cache() != null ) {
+      matchCaches.add( matcher.cache() );
+    }
+    filterStats.add( matcher.filterStats() );
   }
 
 
   /*
    * processListingFile()
    *
-   * Reads listing strings from r, expecting one JSON object per line.
-   * Puts each listing string on the listing stack.
+   * Reads listing lines from r, one JSON object per line.
+   * Copies the raw bytes of each line onto the listing stack.
    */
-  protected static void processListingFile( FileReader r )
-  throws JSONException
+  protected static void processListingFile( LineReader r )
+  throws IOException
   {
-    // create a JSONTokener to read r
-    JSONTokener tokener = new JSONTokener( r );
-    while ( tokener.more() ) {
-      // get the next line
-      String str = tokener.nextTo( '\n' );
-      // discard the newline
-      tokener.next();
-      // put the string on the listing stack
-      listingStack.push( str );
+    ByteBuffer line;
+    while ( ( line = r.readLine() ) != null ) {
+      // put the line on the listing stack
+      listingStack.add( line );
+    }
+  }
+
+
+  /*
+   * writeResults()
+   *
+   * Writes one line per product name to w, in the order the products
+   * were read, listing the product's matches.
+   * Each matched listing is copied out exactly as it was read, so nothing
+   * is re-serialized and the original key order is kept. The bytes are
+   * copied straight from the listing stack (or the mapped listing file),
+   * without decoding.
+   */
+  protected static void writeResults( ResultWriter w )
+  throws IOException
+  {
+    for ( int p = 0; p < results.length; p++ ) {
+      String name = productNames.get( p );
+      IntStack matches = results[p];
+      w.write( "{\"product_name\":\"" + name + "\",\"listings\":[" );
+      for ( int i = 0; i < matches.size(); i++ ) {
+        if ( i > 0 ) {
+          w.write( ", " );
+        }
+        w.write( listingStack.get( matches.get( i ) ).duplicate() );
+      }
+      w.write( "]}\n" );
     }
   }
 
@@ -229,54 +786,275 @@ public class Match
   }
 
 
+  /*
+   * inputFile()
+   *
+   * Returns the input file for path, or the file with ".gz" appended if
+   * only that one exists.
+   */
+  protected static File inputFile( String path )
+  {
+    File file = new File( path );
+    File gzipFile = new File( path + ".gz" );
+    if ( !file.exists() && gzipFile.exists() ) {
+      return gzipFile;
+    }
+    return file;
+  }
+
+
+  /*
+   * openInput()
+   *
+   * Opens file for reading. A gzip-compressed file is recognized by its
+   * magic number (not its name), and is decompressed on a separate thread
+   * as it's read.
+   */
+  protected static InputStream openInput( File file )
+  throws IOException
+  {
+    PushbackInputStream in =
+        new PushbackInputStream( new FileInputStream( file ), 2 );
+    byte[] magic = new byte[ 2 ];
+    int n = 0;
+    int r = 0;
+    while ( n < 2 && ( r = in.read( magic, n, 2 - n ) ) >= 0 ) {
+      n += r;
+    }
+    in.unread( magic, 0, n );
+
+    if ( n == 2 && ( magic[0] & 0xff ) == 0x1f
+        && ( magic[1] & 0xff ) == 0x8b ) {
+      return new GunzipInputStream( in );
+    }
+    return in;
+  }
+
+
+  /*
+   * processArguments()
+   *
+   * Sets the command-line options:
+   *   -mmap        memory-map the listing file instead of reading every
+   *                line onto the listing list up front
+   *   -threads N   split the listings into N ranges and parse and match
+   *                them in parallel (with -mmap, the file is also scanned
+   *                for lines in N parallel ranges)
+   *   -catalog F   start from the product catalog snapshot F, rebuilding
+   *                it first if the product file has changed
+   *   -compile F   build the snapshot F from the product file and stop
+   *   -index       find candidate products with the inverted token index
+   *                instead of the model automaton
+   *   -aliases F   read manufacturer aliases from F (see readAliases())
+   *   -cache N     remember the matches of the last N distinct titles
+   *                (0 turns the cache off)
+   *   -pipeline    stream the listings through the staged pipeline
+   *                (read, parse, match, collect) instead of reading them
+   *                all before matching, with -threads parse and match
+   *                workers; -mmap doesn't apply
+   *   -partition   bucket the listings by manufacturer, then match each
+   *                bucket against its manufacturer's products (one task
+   *                per manufacturer, across the -threads pool); not with
+   *                -pipeline, -index or -cache, since it has no use for
+   *                the token index or the match cache
+   *   -variants    also match models that a title spells with other
+   *                separators, or none ("dscw310" for "dsc-w310")
+   *   -filter      check titles against each manufacturer's model filter
+   *                before matching them, and report how that went; not
+   *                with -variants, since a variant spelling can get past
+   *                the filters
+   */
+  protected static void processArguments( String[] args )
+  {
+    try {
+      for ( int i = 0; i < args.length; i++ ) {
+        if ( args[i].equals( "-mmap" ) ) {
+          mapListings = true;
+        } else if ( args[i].equals( "-threads" ) ) {
+          if ( ++i == args.length ) {
+            throw new IllegalArgumentException( "-threads needs a number" );
+          }
+          threads = Integer.parseInt( args[i] );
+          if ( threads < 1 ) {
+            throw new IllegalArgumentException( "-threads must be at least 1" );
+          }
+        } else if ( args[i].equals( "-index" ) ) {
+          useTokenIndex = true;
+        } else if ( args[i].equals( "-pipeline" ) ) {
+          pipeline = true;
+        } else if ( args[i].equals( "-partition" ) ) {
+          partition = true;
+        } else if ( args[i].equals( "-variants" ) ) {
+          useVariants = true;
+        } else if ( args[i].equals( "-filter" ) ) {
+          useFilters = true;
+        } else if ( args[i].equals( "-cache" ) ) {
+          if ( ++i == args.length ) {
+            throw new IllegalArgumentException( "-cache needs a number" );
+          }
+          cacheSize = Integer.parseInt( args[i] );
+          cacheGiven = true;
+          if ( cacheSize < 0 ) {
+            throw new IllegalArgumentException( "-cache can't be negative" );
+          }
+        } else if ( args[i].equals( "-aliases" ) ) {
+          if ( ++i == args.length ) {
+            throw new IllegalArgumentException( "-aliases needs a file name" );
+          }
+          aliasPath = args[i];
+        } else if ( args[i].equals( "-catalog" )
+            || args[i].equals( "-compile" ) ) {
+          compileOnly = args[i].equals( "-compile" );
+          if ( ++i == args.length ) {
+            throw new IllegalArgumentException( args[ i - 1 ]
+                + " needs a file name" );
+          }
+          catalogPath = args[i];
+        } else {
+          throw new IllegalArgumentException( "Unknown option: " + args[i] );
+        }
+      }
+      if ( useFilters && useVariants ) {
+        throw new IllegalArgumentException(
+            "-filter can't be used with -variants" );
+      }
+      if ( partition && ( pipeline || useTokenIndex || cacheGiven ) ) {
+        throw new IllegalArgumentException( "-partition can't be used with "
+            + ( pipeline ? "-pipeline"
+              : useTokenIndex ? "-index" : "-cache" ) );
+      }
+    } catch ( RuntimeException e ) {
+      // a bad option, a bad number, or a missing value
+      System.err.println( e.getMessage() );
+      System.err.println( "Usage: java Match [-mmap] [-threads N] [-pipeline] "
+          + "[-partition | -index] [-variants | -filter] [-aliases FILE] "
+          + "[-cache N] [-catalog FILE | -compile FILE]" );
+      System.exit( 1 );
+    }
+  }
+
+
   /*
    * main()
    *
    * reads and cross-matches the product and listing files,
    * writing the results to disk
    *
-   * Calls processProductFile(), processListingFile(), matchListing(),
-   * handleException()
+   * Calls processArguments(), readCatalog(), buildIndexes(), readAliases(),
+   * inputFile(), openInput(), ListingPipeline.run(), processListingFile(),
+   * parseListings(), matchManufacturers(), matchByManufacturer(),
+   * matchListings(), writeResults(), handleException()
    */
   public static void main( String[] args )
   {
-    FileReader productReader;
-    FileReader listingReader;
-    FileWriter resultWriter;
+    LineReader listingReader = null;
+    ResultWriter resultWriter;
+
+    processArguments( args );
+    if ( threads > 1 ) {
+      pool = Executors.newFixedThreadPool( threads );
+    }
 
     try {
-      // open up the product, listing, and result files
+      if ( compileOnly ) {
+        // only the product catalog is wanted
+        readCatalog();
+        if ( pool != null ) {
+          pool.shutdown();
+        }
+        System.out.println( "Catalog written to " + catalogPath + "." );
+        return;
+      }
+
+      // open up the listing and result files
       // do it all up front so that any I/O errors are discovered
       // before any processing happens
-      productReader = new FileReader( PRODUCT_FILE );
-      listingReader = new FileReader( LISTING_FILE );
-      resultWriter = new FileWriter( RESULT_FILE );
+      File listingPath = inputFile( LISTING_FILE );
+      if ( mapListings && pipeline ) {
+        // the pipeline only ever streams
+        System.err.println( "-mmap is ignored with -pipeline." );
+        mapListings = false;
+      }
+      if ( mapListings ) {
+        InputStream in = openInput( listingPath );
+        if ( in instanceof GunzipInputStream ) {
+          // there's no mapping a compressed file; read it instead
+          System.err.println( listingPath + " is compressed; "
+              + "reading it instead of mapping it." );
+          mapListings = false;
+          listingReader = new LineReader( in );
+        } else {
+          in.close();
+          listingFile = new MappedLineFile( listingPath.getPath(), pool,
+              threads );
+        }
+      } else {
+        listingReader = new LineReader( openInput( listingPath ) );
+      }
+      resultWriter = new ResultWriter( RESULT_FILE );
 
-      // read the product file
-      processProductFile( productReader );
-      productReader.close();
+      // read the product catalog
+      readCatalog();
+      buildIndexes();
+      readAliases();
 
-      // read the listing file and do the matching
-      processListingFile( listingReader );
-      listingReader.close();
+      if ( pipeline ) {
+        // read, parse, match and collect the listings all at once
+        ListingPipeline stages = new ListingPipeline( listingReader,
+            cacheSize, threads );
+        listingStack = stages.run();
+        listingReader.close();
+        for ( ListingMatcher matcher : stages.matchers() ) {
+          addStats( matcher );
+        }
+      } else {
+        if ( mapListings ) {
+          // the mapped file already knows where every listing is;
+          // each one is parsed straight out of the mapping
+          listingStack = listingFile;
+        } else {
+          // read the listing file
+          processListingFile( listingReader );
+          listingReader.close();
+        }
 
-      // iterate over the listings and do the matching
-      Iterator listingIterator = listingStack.iterator();
-      while ( listingIterator.hasNext() ) {
-        String listingStr = (String) listingIterator.next();
-        matchListing( listingStr );
+        // parse the listings into columns,
+        // then iterate over them and do the matching
+        listings = parseListings();
+        matchManufacturers();
+        if ( partition ) {
+          matchByManufacturer();
+        } else {
+          matchListings();
+        }
       }
 
       // write the results to disk
-      Iterator resultsIterator = resultsMap.keySet().iterator();
-      while ( resultsIterator.hasNext() ) {
-        String name = (String) resultsIterator.next();
-        Stack<JSONObject> listings = resultsMap.get( name );
-        resultWriter.write( "{\"product_name\":\"" + name + "\",\"listings\":"
-            + listings + "}\n");
-      }
+      writeResults( resultWriter );
       resultWriter.close();
+      if ( listingFile != null ) {
+        listingFile.close();
+      }
+
+      if ( pool != null ) {
+        pool.shutdown();
+      }
 
+      if ( !matchCaches.isEmpty() ) {
+        long hits = 0;
+        long misses = 0;
+        for ( MatchCache cache : matchCaches ) {
+          hits += cache.hits();
+          misses += cache.misses();
+        }
+        System.out.println( "Match cache: " + hits + " hits, " + misses
+            + " misses ("
+            + ( hits + misses == 0 ? 0 : 100 * hits / ( hits + misses ) )
+            + "% hit rate)." );
+      }
+      if ( manufacturerFilters != null ) {
+        System.out.println( filterStats.report() );
+      }
       System.out.println( "Results written to results.txt." );
 
     } catch ( Exception e ) {
@@ -0,0 +1,157 @@
+/*
+ * Match cache for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Remembers which products a listing matched, keyed by a 64-bit
+ * fingerprint of its normalized title and manufacturer, so that a
+ * listing repeated with a different price (or from a different seller)
+ * isn't matched again. A listing that matched nothing is remembered too,
+ * as an empty list.
+ *
+ * The cache holds a bounded number of entries and evicts the least
+ * recently used one when it's full. Each entry keeps the title and
+ * manufacturer it was made for, and a lookup only hits if they're the
+ * same, so two listings whose fingerprints collide never get each
+ * other's matches; the later one just takes over the entry.
+ */
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+public class MatchCache
+{
+  public static final int DEFAULT_CAPACITY = 1 << 16;
+
+  protected int capacity;
+  // access order, so the eldest entry is the least recently used
+  private LinkedHashMap<Long,Entry> entries =
+      new LinkedHashMap<Long,Entry>( 16, 0.75f, true );
+  protected long hits = 0;
+  protected long misses = 0;
+
+
+  /*
+   * What a listing matched, and the title and manufacturer it was for.
+   */
+  protected static class Entry
+  {
+    protected final byte[] title;
+    protected final String manufacturer;
+    protected final int[] ordinals;
+
+
+    protected Entry( ByteBuffer title, String manufacturer, int[] ordinals )
+    {
+      this.title = new byte[ title.remaining() ];
+      title.duplicate().get( this.title );
+      this.manufacturer = manufacturer;
+      this.ordinals = ordinals;
+    }
+
+
+    protected boolean isFor( ByteBuffer title, String manufacturer )
+    {
+      if ( title.remaining() != this.title.length
+          || !manufacturer.equals( this.manufacturer ) ) {
+        return false;
+      }
+      for ( int i = 0; i < this.title.length; i++ ) {
+        if ( title.get( title.position() + i ) != this.title[i] ) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+
+  public MatchCache( int capacity )
+  {
+    this.capacity = capacity;
+  }
+
+
+  /*
+   * lookup()
+   *
+   * Returns the product ordinals remembered for the listing with title
+   * (its UTF-8 bytes) and manufacturer, whose fingerprint is given, or
+   * null if there aren't any, counting a hit or a miss.
+   */
+  public int[] lookup( long fingerprint, ByteBuffer title,
+      String manufacturer )
+  {
+    Entry entry = entries.get( fingerprint );
+    if ( entry == null || !entry.isFor( title, manufacturer ) ) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.ordinals;
+  }
+
+
+  /*
+   * put()
+   *
+   * Remembers ordinals for the listing with title and manufacturer,
+   * whose fingerprint is given, evicting the least recently used entry
+   * if the cache is full. title is copied, so it may be a view.
+   */
+  public void put( long fingerprint, ByteBuffer title, String manufacturer,
+      int[] ordinals )
+  {
+    entries.put( fingerprint, new Entry( title, manufacturer, ordinals ) );
+    if ( entries.size() > capacity ) {
+      Iterator<Entry> eldest = entries.values().iterator();
+      eldest.next();
+      eldest.remove();
+    }
+  }
+
+
+  public int size()
+  {
+    return entries.size();
+  }
+
+
+  public long hits()
+  {
+    return hits;
+  }
+
+
+  public long misses()
+  {
+    return misses;
+  }
+
+
+  /*
+   * fingerprint()
+   *
+   * Hashes the UTF-8 bytes of a title and a manufacturer into 64 bits
+   * (FNV-1a, with a final mix so every input bit reaches every output bit).
+   * The title is hashed where it lies, without being decoded.
+   */
+  public static long fingerprint( ByteBuffer title, String manufacturer )
+  {
+    long h = 0xcbf29ce484222325L;
+    for ( int i = title.position(); i < title.limit(); i++ ) {
+      h = ( h ^ ( title.get( i ) & 0xff ) ) * 0x100000001b3L;
+    }
+    // a separator that UTF-8 never produces, so the split is unambiguous
+    h = ( h ^ 0xff ) * 0x100000001b3L;
+    for ( int i = 0; i < manufacturer.length(); i++ ) {
+      h = ( h ^ manufacturer.charAt( i ) ) * 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
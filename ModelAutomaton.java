@@ -0,0 +1,283 @@
+/*
+ * Model automaton for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * An Aho-Corasick automaton over a set of strings (the normalized models
+ * and families of the catalog). A single pass over a title reports every
+ * occurrence of every string in it, however many strings there are.
+ *
+ * States are numbered from 0 (the root). Transitions live in one
+ * open-addressing hash table keyed by state and character, so a large
+ * alphabet costs nothing for states that don't use it.
+ *
+ * Every table the automaton is scanned with is a flat int or long
+ * buffer. A new automaton's tables are on the heap; one read from a
+ * catalog snapshot scans the snapshot's mapped tables where they lie.
+ */
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+public class ModelAutomaton
+{
+  protected IntBuffer patternLength;
+
+  protected int states = 1;
+  // per state: the pattern that ends there (or -1), the longest proper
+  // suffix that is a state, and the nearest such suffix with a pattern
+  protected IntBuffer output = grow( IntBuffer.allocate( 0 ), 64, -1 );
+  protected IntBuffer fail = IntBuffer.allocate( 64 );
+  protected IntBuffer dictLink = IntBuffer.allocate( 64 );
+  // per state, while building: its first child, its next sibling,
+  // and the character that leads to it
+  protected int[] firstChild = new int[ 64 ];
+  protected int[] nextSibling = new int[ 64 ];
+  protected char[] label = new char[ 64 ];
+
+  // transitions: keys[ slot ] = state << 16 | character,
+  // targets[ slot ] = next state; an empty slot has key -1
+  protected LongBuffer keys = emptyKeys( 128 );
+  protected IntBuffer targets = IntBuffer.allocate( 128 );
+  protected int transitions = 0;
+
+
+  /*
+   * Builds the automaton for patterns; pattern p is reported as p.
+   * Empty patterns are left out, since they'd be found everywhere; a
+   * repeated pattern is reported under its first number only.
+   */
+  public ModelAutomaton( String[] patterns )
+  {
+    Arrays.fill( firstChild, -1 );
+    int[] lengths = new int[ patterns.length ];
+    for ( int p = 0; p < patterns.length; p++ ) {
+      lengths[p] = patterns[p].length();
+      if ( patterns[p].length() > 0 ) {
+        insert( patterns[p], p );
+      }
+    }
+    patternLength = IntBuffer.wrap( lengths );
+    link();
+    // the per-state tables are exactly as long as there are states
+    output = grow( output, states, -1 );
+    fail = grow( fail, states, 0 );
+    dictLink = grow( dictLink, states, 0 );
+    // only needed to build the links
+    firstChild = null;
+    nextSibling = null;
+    label = null;
+  }
+
+
+  /*
+   * An automaton over tables that were built before, such as the ones
+   * in a catalog snapshot. The tables are used as they are, not copied.
+   */
+  public ModelAutomaton( IntBuffer patternLength, IntBuffer output,
+      IntBuffer fail, IntBuffer dictLink, LongBuffer keys,
+      IntBuffer targets )
+  {
+    this.patternLength = patternLength;
+    this.states = output.limit();
+    this.output = output;
+    this.fail = fail;
+    this.dictLink = dictLink;
+    this.keys = keys;
+    this.targets = targets;
+  }
+
+
+  protected void insert( String pattern, int p )
+  {
+    int state = 0;
+    for ( int i = 0; i < pattern.length(); i++ ) {
+      char c = pattern.charAt( i );
+      int next = next( state, c );
+      if ( next < 0 ) {
+        next = addState( state, c );
+      }
+      state = next;
+    }
+    if ( output.get( state ) < 0 ) {
+      output.put( state, p );
+    }
+  }
+
+
+  protected int addState( int parent, char c )
+  {
+    if ( states == output.limit() ) {
+      int n = states * 2;
+      output = grow( output, n, -1 );
+      fail = grow( fail, n, 0 );
+      dictLink = grow( dictLink, n, 0 );
+      firstChild = Arrays.copyOf( firstChild, n );
+      nextSibling = Arrays.copyOf( nextSibling, n );
+      label = Arrays.copyOf( label, n );
+      Arrays.fill( firstChild, states, n, -1 );
+    }
+    int state = states++;
+    label[ state ] = c;
+    nextSibling[ state ] = firstChild[ parent ];
+    firstChild[ parent ] = state;
+    putTransition( parent, c, state );
+    return state;
+  }
+
+
+  /*
+   * link()
+   *
+   * Sets the failure and dictionary links of every state, breadth first,
+   * so that a state's links are set before its children's.
+   */
+  protected void link()
+  {
+    int[] queue = new int[ states ];
+    int head = 0;
+    int tail = 0;
+    for ( int child = firstChild[0]; child >= 0;
+        child = nextSibling[ child ] ) {
+      fail.put( child, 0 );
+      dictLink.put( child, 0 );
+      queue[ tail++ ] = child;
+    }
+    while ( head < tail ) {
+      int state = queue[ head++ ];
+      for ( int child = firstChild[ state ]; child >= 0;
+          child = nextSibling[ child ] ) {
+        char c = label[ child ];
+        int f = fail.get( state );
+        while ( f != 0 && next( f, c ) < 0 ) {
+          f = fail.get( f );
+        }
+        int g = next( f, c );
+        int link = ( g < 0 ) ? 0 : g;
+        fail.put( child, link );
+        dictLink.put( child, ( output.get( link ) >= 0 )
+            ? link : dictLink.get( link ) );
+        queue[ tail++ ] = child;
+      }
+    }
+  }
+
+
+  /*
+   * scan()
+   *
+   * Finds every occurrence of every pattern in text. Each one is pushed
+   * onto hits as two ints: the pattern's number, then the index just past
+   * the end of the occurrence. Occurrences are pushed in order of where
+   * they end.
+   */
+  public void scan( String text, IntStack hits )
+  {
+    int state = 0;
+    for ( int i = 0; i < text.length(); i++ ) {
+      char c = text.charAt( i );
+      int next = next( state, c );
+      while ( next < 0 && state != 0 ) {
+        state = fail.get( state );
+        next = next( state, c );
+      }
+      state = ( next < 0 ) ? 0 : next;
+
+      int s = ( output.get( state ) >= 0 ) ? state : dictLink.get( state );
+      while ( s != 0 ) {
+        hits.push( output.get( s ) );
+        hits.push( i + 1 );
+        s = dictLink.get( s );
+      }
+    }
+  }
+
+
+  public int patternCount()
+  {
+    return patternLength.limit();
+  }
+
+
+  public int length( int p )
+  {
+    return patternLength.get( p );
+  }
+
+
+  protected int next( int state, char c )
+  {
+    long key = ( (long) state << 16 ) | c;
+    int mask = keys.limit() - 1;
+    for ( int slot = hash( key ) & mask; ; slot = ( slot + 1 ) & mask ) {
+      long k = keys.get( slot );
+      if ( k == key ) {
+        return targets.get( slot );
+      }
+      if ( k < 0 ) {
+        return -1;
+      }
+    }
+  }
+
+
+  protected void putTransition( int state, char c, int target )
+  {
+    if ( ( transitions + 1 ) * 2 > keys.limit() ) {
+      LongBuffer oldKeys = keys;
+      IntBuffer oldTargets = targets;
+      keys = emptyKeys( oldKeys.limit() * 2 );
+      targets = IntBuffer.allocate( oldKeys.limit() * 2 );
+      for ( int i = 0; i < oldKeys.limit(); i++ ) {
+        if ( oldKeys.get( i ) >= 0 ) {
+          store( oldKeys.get( i ), oldTargets.get( i ) );
+        }
+      }
+    }
+    store( ( (long) state << 16 ) | c, target );
+    transitions++;
+  }
+
+
+  protected void store( long key, int target )
+  {
+    int mask = keys.limit() - 1;
+    int slot = hash( key ) & mask;
+    while ( keys.get( slot ) >= 0 ) {
+      slot = ( slot + 1 ) & mask;
+    }
+    keys.put( slot, key );
+    targets.put( slot, target );
+  }
+
+
+  /*
+   * grow()
+   *
+   * Returns a heap copy of table that is n entries long, with any new
+   * entries set to fill.
+   */
+  protected static IntBuffer grow( IntBuffer table, int n, int fill )
+  {
+    int[] grown = new int[ n ];
+    int kept = Math.min( n, table.limit() );
+    table.duplicate().get( grown, 0, kept );
+    Arrays.fill( grown, kept, n, fill );
+    return IntBuffer.wrap( grown );
+  }
+
+
+  protected static LongBuffer emptyKeys( int n )
+  {
+    long[] keys = new long[ n ];
+    Arrays.fill( keys, -1 );
+    return LongBuffer.wrap( keys );
+  }
+
+
+  protected static int hash( long key )
+  {
+    long h = key * 0x9e3779b97f4a7c15L;
+    return (int) ( h ^ ( h >>> 32 ) );
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Model filter for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * A Bloom filter over the model tokens of one manufacturer's products,
+ * for turning away titles that can't match any of them before the
+ * products are checked at all.
+ *
+ * A token is a maximal run of word characters (letters, digits and '_'),
+ * the same word characters ModelMatcher's boundaries use. A product is
+ * keyed on one token of its model that has to turn up as a whole token
+ * of any title that matches it:
+ * - with a family, the model is word-bounded, so every token of it is
+ *   a whole token of the title; the longest one is used
+ * - without one, the model only has to be contained in the title, so
+ *   its first and last tokens may be parts of longer title tokens; only
+ *   a token with a non-word character on either side of it within the
+ *   model will do, and again the longest one is used
+ * A model with no such token is kept aside and looked for in the title
+ * directly, and an empty model lets every title through.
+ *
+ * So the filter never turns away a title that would match; it only
+ * sometimes lets through one that won't.
+ */
+
+public class ModelFilter
+{
+  public static final int BITS_PER_KEY = 16;
+  public static final int HASHES = 4;
+
+  protected final long[] bits;
+  // the number of bits, less one; always a power of two less one
+  protected final int mask;
+  // models without a key, which have to be looked for whole
+  protected final String[] unkeyed;
+  protected final boolean everything;
+
+
+  /*
+   * Counts of titles checked against filters, how many were turned away,
+   * and how many were let through but matched nothing.
+   */
+  public static class Stats
+  {
+    public long checks = 0;
+    public long skips = 0;
+    public long misses = 0;
+
+
+    public synchronized void add( Stats other )
+    {
+      checks += other.checks;
+      skips += other.skips;
+      misses += other.misses;
+    }
+
+
+    /*
+     * report()
+     *
+     * Describes the counts: the skip rate is the share of checks turned
+     * away, and the false positive rate is the share of the titles let
+     * through that then matched nothing.
+     */
+    public String report()
+    {
+      long passed = checks - skips;
+      return "Model filter: " + skips + " of " + checks + " checks skipped ("
+          + ( checks == 0 ? 0 : 100 * skips / checks ) + "% skip rate), "
+          + misses + " false positives ("
+          + ( passed == 0 ? 0 : 100 * misses / passed )
+          + "% false positive rate).";
+    }
+  }
+
+
+  public ModelFilter( Product[] products )
+  {
+    int size = Long.SIZE;
+    while ( size < products.length * BITS_PER_KEY ) {
+      size <<= 1;
+    }
+    this.bits = new long[ size / Long.SIZE ];
+    this.mask = size - 1;
+
+    boolean everything = false;
+    IntStack keyless = new IntStack();
+    for ( int p = 0; p < products.length; p++ ) {
+      String model = products[p].model;
+      int[] key = key( model, products[p].family != null );
+      if ( key != null ) {
+        add( hash( model, key[0], key[1] ) );
+      } else if ( model.isEmpty() ) {
+        everything = true;
+      } else {
+        keyless.push( p );
+      }
+    }
+    this.everything = everything;
+    this.unkeyed = new String[ keyless.size() ];
+    for ( int i = 0; i < unkeyed.length; i++ ) {
+      unkeyed[i] = products[ keyless.get( i ) ].model;
+    }
+  }
+
+
+  /*
+   * key()
+   *
+   * Returns where the longest token of model that a matching title has
+   * to have whole starts and ends, or null if it hasn't got one.
+   */
+  protected static int[] key( String model, boolean wordBounded )
+  {
+    int[] key = null;
+    int i = 0;
+    while ( i < model.length() ) {
+      if ( !ModelMatcher.isWordChar( model.charAt( i ) ) ) {
+        i++;
+        continue;
+      }
+      int start = i;
+      while ( i < model.length()
+          && ModelMatcher.isWordChar( model.charAt( i ) ) ) {
+        i++;
+      }
+      boolean whole = wordBounded || ( start > 0 && i < model.length() );
+      if ( whole && ( key == null || i - start > key[1] - key[0] ) ) {
+        key = new int[] { start, i };
+      }
+    }
+    return key;
+  }
+
+
+  protected void add( long hash )
+  {
+    int h1 = (int) hash;
+    int h2 = (int) ( hash >>> 32 ) | 1;
+    for ( int k = 0; k < HASHES; k++ ) {
+      int bit = ( h1 + k * h2 ) & mask;
+      bits[ bit >>> 6 ] |= 1L << bit;
+    }
+  }
+
+
+  protected boolean contains( long hash )
+  {
+    int h1 = (int) hash;
+    int h2 = (int) ( hash >>> 32 ) | 1;
+    for ( int k = 0; k < HASHES; k++ ) {
+      int bit = ( h1 + k * h2 ) & mask;
+      if ( ( bits[ bit >>> 6 ] & ( 1L << bit ) ) == 0 ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  /*
+   * mightMatch()
+   *
+   * Whether title could match one of the products; false means it
+   * certainly doesn't. Each token of the title is hashed where it lies,
+   * so nothing is allocated.
+   *
+   * Calls hash(), contains()
+   */
+  public boolean mightMatch( String title )
+  {
+    if ( everything ) {
+      return true;
+    }
+    int i = 0;
+    while ( i < title.length() ) {
+      if ( !ModelMatcher.isWordChar( title.charAt( i ) ) ) {
+        i++;
+        continue;
+      }
+      int start = i;
+      while ( i < title.length()
+          && ModelMatcher.isWordChar( title.charAt( i ) ) ) {
+        i++;
+      }
+      if ( contains( hash( title, start, i ) ) ) {
+        return true;
+      }
+    }
+    for ( int k = 0; k < unkeyed.length; k++ ) {
+      if ( title.contains( unkeyed[k] ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+  /*
+   * hash()
+   *
+   * Hashes the characters of s from start up to end.
+   */
+  protected static long hash( String s, int start, int end )
+  {
+    long h = 0xcbf29ce484222325L;
+    for ( int j = start; j < end; j++ ) {
+      h = ( h ^ s.charAt( j ) ) * 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    return h ^ ( h >>> 33 );
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Model matcher for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Finds a product's model in a listing title. Built once per product,
+ * so matching a title never compiles a regular expression.
+ *
+ * A word-bounded matcher does what ".*\\b" + model + "\\b.*" was meant
+ * to do, except that the model is always taken literally: a model like
+ * "4.3" or "gxr (a12)" has to appear exactly as written, with a word
+ * boundary on either side of it. A boundary is where a word character
+ * (letter, digit or '_') meets a non-word character or either end of the
+ * title, just like regex \b.
+ * A matcher that isn't word-bounded is a plain substring check.
+ */
+
+public class ModelMatcher
+{
+  protected final String model;
+  protected final boolean wordBounded;
+
+
+  public ModelMatcher( String model, boolean wordBounded )
+  {
+    this.model = model;
+    this.wordBounded = wordBounded;
+  }
+
+
+  /*
+   * matches()
+   *
+   * Checks every occurrence of the model in title until one is bounded
+   * on both sides (or the first one, if boundaries don't matter).
+   * An empty word-bounded model occurs at every position of the title,
+   * so it matches wherever the title has a word boundary at all, the
+   * same as "\\b\\b" would.
+   *
+   * Calls hasBoundary(), isBoundary()
+   */
+  public boolean matches( String title )
+  {
+    if ( !wordBounded ) {
+      return title.contains( model );
+    }
+    if ( model.isEmpty() ) {
+      return hasBoundary( title );
+    }
+    // no occurrence can start after last
+    int last = title.length() - model.length();
+    int i = title.indexOf( model );
+    while ( i >= 0 ) {
+      if ( isBoundary( title, i ) && isBoundary( title, i + model.length() ) ) {
+        return true;
+      }
+      if ( i + 1 > last ) {
+        break;
+      }
+      i = title.indexOf( model, i + 1 );
+    }
+    return false;
+  }
+
+
+  /*
+   * hasBoundary()
+   *
+   * Whether there's a word boundary anywhere in s.
+   */
+  protected static boolean hasBoundary( String s )
+  {
+    for ( int i = 0; i <= s.length(); i++ ) {
+      if ( isBoundary( s, i ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+  /*
+   * isBoundary()
+   *
+   * Whether there's a word boundary in s just before position i.
+   */
+  protected static boolean isBoundary( String s, int i )
+  {
+    boolean before = ( i > 0 ) && isWordChar( s.charAt( i - 1 ) );
+    boolean after = ( i < s.length() ) && isWordChar( s.charAt( i ) );
+    return before != after;
+  }
+
+
+  protected static boolean isWordChar( char c )
+  {
+    return c == '_' || Character.isLetterOrDigit( c );
+  }
+}
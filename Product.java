@@ -0,0 +1,34 @@
+/*
+ * Product record for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * The fields of one product that are used for matching.
+ * Everything but the name is normalized.
+ */
+
+public class Product
+{
+  // the product's place in the results; products with the same
+  // name share one
+  public final int ordinal;
+  // as it appears in the product file, for the results
+  public final String name;
+  public final String manufacturer;
+  // null if the product has no family
+  public final String family;
+  public final String model;
+  // finds the model in a title; word-bounded when there's a family
+  public final ModelMatcher modelMatcher;
+
+
+  public Product( int ordinal, String name, String manufacturer,
+      String family, String model )
+  {
+    this.ordinal = ordinal;
+    this.name = name;
+    this.manufacturer = manufacturer;
+    this.family = family;
+    this.model = model;
+    this.modelMatcher = new ModelMatcher( model, family != null );
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Product index for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * The tables that listings are matched through. Every distinct model
+ * and family in the catalog (its patterns) is numbered, and products are
+ * numbered in manufacturer order:
+ *   automaton            finds every pattern in a title
+ *   productManufacturer  per product, its manufacturer's index,
+ *   productPosition      its position in that manufacturer's list,
+ *   productFamily        the pattern number of its family (-1 if it has
+ *                        none),
+ *   productOrdinal       and its ordinal
+ *   modelStart           per pattern, where its products start in
+ *   modelProducts        the products that have each pattern as their
+ *                        model, pattern by pattern
+ *   emptyModelProducts   products with an empty model, which the
+ *                        automaton can't find
+ * Every table is a flat int or long buffer, so a catalog snapshot can
+ * hold them as they are and a later run can match through the
+ * snapshot's mapping without building anything.
+ */
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+public class ProductIndex
+{
+  public final ModelAutomaton automaton;
+  public final IntBuffer productManufacturer;
+  public final IntBuffer productPosition;
+  public final IntBuffer productFamily;
+  public final IntBuffer productOrdinal;
+  public final IntBuffer modelStart;
+  public final IntBuffer modelProducts;
+  public final IntBuffer emptyModelProducts;
+
+
+  /*
+   * Builds the index of manufacturerProducts.
+   */
+  public ProductIndex( Product[][] manufacturerProducts )
+  {
+    HashMap<String,Integer> patternIds = new HashMap<String,Integer>();
+    List<String> patterns = new ArrayList<String>();
+    List<IntStack> products = new ArrayList<IntStack>();
+    IntStack emptyModels = new IntStack();
+
+    int count = 0;
+    for ( int m = 0; m < manufacturerProducts.length; m++ ) {
+      count += manufacturerProducts[m].length;
+    }
+    int[] manufacturer = new int[ count ];
+    int[] position = new int[ count ];
+    int[] family = new int[ count ];
+    int[] ordinal = new int[ count ];
+
+    int q = 0;
+    for ( int m = 0; m < manufacturerProducts.length; m++ ) {
+      for ( int pos = 0; pos < manufacturerProducts[m].length; pos++ ) {
+        Product product = manufacturerProducts[m][pos];
+        manufacturer[q] = m;
+        position[q] = pos;
+        family[q] = -1;
+        ordinal[q] = product.ordinal;
+        String[] strings = { product.model, product.family };
+        for ( int k = 0; k < strings.length && strings[k] != null; k++ ) {
+          Integer id = patternIds.get( strings[k] );
+          if ( id == null ) {
+            id = patterns.size();
+            patternIds.put( strings[k], id );
+            patterns.add( strings[k] );
+            products.add( new IntStack() );
+          }
+          if ( k == 0 ) {
+            products.get( id ).push( q );
+          } else {
+            family[q] = id;
+          }
+        }
+        if ( product.model.length() == 0 ) {
+          emptyModels.push( q );
+        }
+        q++;
+      }
+    }
+
+    int[] start = new int[ patterns.size() + 1 ];
+    IntStack models = new IntStack();
+    for ( int p = 0; p < patterns.size(); p++ ) {
+      start[p] = models.size();
+      IntStack having = products.get( p );
+      for ( int i = 0; i < having.size(); i++ ) {
+        models.push( having.get( i ) );
+      }
+    }
+    start[ patterns.size() ] = models.size();
+
+    this.automaton = new ModelAutomaton( patterns.toArray( new String[ 0 ] ) );
+    this.productManufacturer = IntBuffer.wrap( manufacturer );
+    this.productPosition = IntBuffer.wrap( position );
+    this.productFamily = IntBuffer.wrap( family );
+    this.productOrdinal = IntBuffer.wrap( ordinal );
+    this.modelStart = IntBuffer.wrap( start );
+    this.modelProducts = IntBuffer.wrap( models.toArray() );
+    this.emptyModelProducts = IntBuffer.wrap( emptyModels.toArray() );
+  }
+
+
+  /*
+   * An index over tables that were built before, such as the ones in a
+   * catalog snapshot. The tables are used as they are, not copied.
+   */
+  public ProductIndex( ModelAutomaton automaton,
+      IntBuffer productManufacturer, IntBuffer productPosition,
+      IntBuffer productFamily, IntBuffer productOrdinal,
+      IntBuffer modelStart, IntBuffer modelProducts,
+      IntBuffer emptyModelProducts )
+  {
+    this.automaton = automaton;
+    this.productManufacturer = productManufacturer;
+    this.productPosition = productPosition;
+    this.productFamily = productFamily;
+    this.productOrdinal = productOrdinal;
+    this.modelStart = modelStart;
+    this.modelProducts = modelProducts;
+    this.emptyModelProducts = emptyModelProducts;
+  }
+
+
+  public int productCount()
+  {
+    return productManufacturer.limit();
+  }
+}
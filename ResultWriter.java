@@ -0,0 +1,88 @@
+/*
+ * Result writer for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Writes the results file through a FileChannel. Text and raw bytes are
+ * gathered in one large buffer, so a listing can be copied straight out
+ * of a mapped listing file without being decoded or re-serialized.
+ */
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+public class ResultWriter
+{
+  public static final int BUFFER_SIZE = 1 << 20;
+
+  protected FileChannel channel;
+  protected Charset charset;
+  protected ByteBuffer buffer = ByteBuffer.allocateDirect( BUFFER_SIZE );
+
+
+  public ResultWriter( String path )
+  throws IOException
+  {
+    // listings are copied through as UTF-8, so the rest has to match
+    this( path, StandardCharsets.UTF_8 );
+  }
+
+
+  public ResultWriter( String path, Charset charset )
+  throws IOException
+  {
+    this.channel = new FileOutputStream( path ).getChannel();
+    this.charset = charset;
+  }
+
+
+  public void write( String s )
+  throws IOException
+  {
+    write( ByteBuffer.wrap( s.getBytes( charset ) ) );
+  }
+
+
+  /*
+   * write()
+   *
+   * Copies the remaining bytes of src into the output.
+   * Anything too big for the buffer is written to the channel directly.
+   */
+  public void write( ByteBuffer src )
+  throws IOException
+  {
+    if ( src.remaining() > buffer.remaining() ) {
+      flush();
+      if ( src.remaining() > buffer.capacity() ) {
+        while ( src.hasRemaining() ) {
+          channel.write( src );
+        }
+        return;
+      }
+    }
+    buffer.put( src );
+  }
+
+
+  public void flush()
+  throws IOException
+  {
+    buffer.flip();
+    while ( buffer.hasRemaining() ) {
+      channel.write( buffer );
+    }
+    buffer.clear();
+  }
+
+
+  public void close()
+  throws IOException
+  {
+    flush();
+    channel.close();
+  }
+}
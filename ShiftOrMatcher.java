@@ -0,0 +1,187 @@
+/*
+ * Shift-Or model matcher for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Finds the models of one manufacturer's products in a title with the
+ * bit-parallel Shift-Or (Bitap) algorithm. The models are packed side by
+ * side into 64-bit words, as many as fit in each, and a single pass over
+ * the title advances every model in a word at once with a shift, an and
+ * and an or per character.
+ *
+ * A model occupies one bit per character, so only models of 1 to 63
+ * characters are packed; anything else (an empty model, or a very long
+ * one) is left to the product's own ModelMatcher. Either way a model is
+ * taken literally, and word-bounded models get the same boundary checks
+ * as ModelMatcher, so the two always agree.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ShiftOrMatcher
+{
+  public static final int MAX_LENGTH = Long.SIZE - 1;
+  // characters below this have their masks in a table
+  protected static final int TABLE_SIZE = 128;
+
+  protected final Product[] products;
+  protected final Group[] groups;
+  // products whose models aren't packed
+  protected final int[] unpacked;
+
+
+  /*
+   * One word of packed models. A model's bits run from its first
+   * character (its start bit) to its last character (its end bit).
+   * In the masks a 0 bit means the character is in that place of the
+   * model; in the state a 0 bit means the model matches up to there.
+   */
+  protected static class Group
+  {
+    protected long[] table = new long[ TABLE_SIZE ];
+    // masks of the characters that aren't in the table
+    protected char[] otherChars = new char[ 0 ];
+    protected long[] otherMasks = new long[ 0 ];
+    protected long starts = 0;
+    protected long ends = 0;
+    // the product whose model ends at each bit
+    protected int[] product = new int[ Long.SIZE ];
+    protected int bits = 0;
+
+
+    protected Group()
+    {
+      Arrays.fill( table, ~0L );
+    }
+
+
+    protected void add( int p, String model )
+    {
+      starts |= 1L << bits;
+      for ( int j = 0; j < model.length(); j++ ) {
+        clear( model.charAt( j ), 1L << ( bits + j ) );
+      }
+      bits += model.length();
+      ends |= 1L << ( bits - 1 );
+      product[ bits - 1 ] = p;
+    }
+
+
+    protected void clear( char c, long bit )
+    {
+      if ( c < TABLE_SIZE ) {
+        table[ c ] &= ~bit;
+        return;
+      }
+      for ( int i = 0; i < otherChars.length; i++ ) {
+        if ( otherChars[i] == c ) {
+          otherMasks[i] &= ~bit;
+          return;
+        }
+      }
+      otherChars = Arrays.copyOf( otherChars, otherChars.length + 1 );
+      otherMasks = Arrays.copyOf( otherMasks, otherMasks.length + 1 );
+      otherChars[ otherChars.length - 1 ] = c;
+      otherMasks[ otherMasks.length - 1 ] = ~bit;
+    }
+
+
+    protected long mask( char c )
+    {
+      if ( c < TABLE_SIZE ) {
+        return table[ c ];
+      }
+      for ( int i = 0; i < otherChars.length; i++ ) {
+        if ( otherChars[i] == c ) {
+          return otherMasks[i];
+        }
+      }
+      return ~0L;
+    }
+  }
+
+
+  /*
+   * Packs the models of products, in order, into as few words as the
+   * order allows.
+   */
+  public ShiftOrMatcher( Product[] products )
+  {
+    this.products = products;
+    List<Group> packed = new ArrayList<Group>();
+    IntStack rest = new IntStack();
+    Group group = null;
+    for ( int p = 0; p < products.length; p++ ) {
+      String model = products[p].model;
+      if ( model.isEmpty() || model.length() > MAX_LENGTH ) {
+        rest.push( p );
+        continue;
+      }
+      if ( group == null || group.bits + model.length() > Long.SIZE ) {
+        group = new Group();
+        packed.add( group );
+      }
+      group.add( p, model );
+    }
+    this.groups = packed.toArray( new Group[ packed.size() ] );
+    this.unpacked = rest.toArray();
+  }
+
+
+  /*
+   * scan()
+   *
+   * Sets found[ p ] for every product p that matches title, and clears
+   * it for the rest: the same products familyAndModelMatch() would
+   * accept. A product with a family needs the family in the title and
+   * the model with word boundaries; one without just needs the model.
+   * For an unpacked model the family is checked first, as
+   * familyAndModelMatch() does, so the model is only looked for in
+   * titles that have the family.
+   *
+   * Calls familyIn(), ModelMatcher.isBoundary(), ModelMatcher.matches()
+   */
+  public void scan( String title, boolean[] found )
+  {
+    Arrays.fill( found, 0, products.length, false );
+    for ( int g = 0; g < groups.length; g++ ) {
+      Group group = groups[g];
+      long state = ~0L;
+      for ( int i = 0; i < title.length(); i++ ) {
+        state = ( ( state << 1 ) & ~group.starts )
+            | group.mask( title.charAt( i ) );
+        long hits = ~state & group.ends;
+        while ( hits != 0 ) {
+          int p = group.product[ Long.numberOfTrailingZeros( hits ) ];
+          hits &= hits - 1;
+          if ( found[p] ) {
+            continue;
+          }
+          Product product = products[p];
+          int start = i + 1 - product.model.length();
+          found[p] = product.family == null
+              || ( ModelMatcher.isBoundary( title, start )
+                  && ModelMatcher.isBoundary( title, i + 1 )
+                  && title.contains( product.family ) );
+        }
+      }
+    }
+    for ( int k = 0; k < unpacked.length; k++ ) {
+      int p = unpacked[k];
+      found[p] = familyIn( products[p], title )
+          && products[p].modelMatcher.matches( title );
+    }
+  }
+
+
+  /*
+   * familyIn()
+   *
+   * Whether title has product's family, if it has one.
+   */
+  public static boolean familyIn( Product product, String title )
+  {
+    return product.family == null || title.contains( product.family );
+  }
+}
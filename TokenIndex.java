@@ -0,0 +1,256 @@
+/*
+ * Token index for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * An inverted index from pieces of a title to the products that could
+ * match it, so a title only has to be checked against a few candidates.
+ *
+ * A title is split into runs: maximal stretches of word characters and
+ * of non-word characters, so each run starts and ends on a word boundary.
+ * A word-bounded model can only be found where it's exactly some number
+ * of whole runs in a row, so models that need word boundaries are
+ * indexed whole, and looked up as n-grams of consecutive title runs
+ * (e.g. "eos", " ", "7d" for "eos 7d").
+ * A model that only needs to be contained in the title could start or
+ * end in the middle of a run, so it's indexed by its first three
+ * characters instead, and looked up by every three characters of the
+ * title. Models too short for that are candidates for every title.
+ *
+ * Products are numbered in manufacturer order, the way Match numbers
+ * them. Every candidate still has to be checked with
+ * familyAndModelMatch(); the index never leaves out a product that would
+ * match, it only rules out the ones that can't.
+ *
+ * Looking up a title allocates nothing: both tables are keyed by longs
+ * worked out from the title's characters where they lie. GRAM characters
+ * of 16 bits each fit in a long exactly. A run n-gram is keyed by a
+ * 64-bit hash, so two n-grams can share a key, but that only ever adds a
+ * candidate, which the check then turns away.
+ */
+
+public class TokenIndex
+{
+  public static final int GRAM = 3;
+
+  // hashes of word-bounded models, and the products that have them
+  protected LongTable models = new LongTable();
+  // which numbers of runs the indexed models span
+  protected boolean[] runCounts = new boolean[ 1 ];
+  // the first GRAM characters of every other model, and their products
+  protected LongTable grams = new LongTable();
+  // products that are candidates for every title
+  protected IntStack always = new IntStack();
+
+
+  /*
+   * An open-addressing table from long keys to lists of products.
+   * An empty slot has no list.
+   */
+  protected static class LongTable
+  {
+    protected long[] keys = new long[ 64 ];
+    protected IntStack[] values = new IntStack[ 64 ];
+    protected int size = 0;
+
+
+    protected IntStack get( long key )
+    {
+      int mask = keys.length - 1;
+      for ( int slot = slot( key, mask ); values[ slot ] != null;
+          slot = ( slot + 1 ) & mask ) {
+        if ( keys[ slot ] == key ) {
+          return values[ slot ];
+        }
+      }
+      return null;
+    }
+
+
+    protected void add( long key, int q )
+    {
+      IntStack products = get( key );
+      if ( products == null ) {
+        if ( ( size + 1 ) * 2 > keys.length ) {
+          grow();
+        }
+        products = new IntStack( 1 );
+        insert( key, products );
+        size++;
+      }
+      products.push( q );
+    }
+
+
+    protected void insert( long key, IntStack products )
+    {
+      int mask = keys.length - 1;
+      int slot = slot( key, mask );
+      while ( values[ slot ] != null ) {
+        slot = ( slot + 1 ) & mask;
+      }
+      keys[ slot ] = key;
+      values[ slot ] = products;
+    }
+
+
+    protected void grow()
+    {
+      long[] oldKeys = keys;
+      IntStack[] oldValues = values;
+      keys = new long[ oldKeys.length * 2 ];
+      values = new IntStack[ oldValues.length * 2 ];
+      for ( int i = 0; i < oldKeys.length; i++ ) {
+        if ( oldValues[i] != null ) {
+          insert( oldKeys[i], oldValues[i] );
+        }
+      }
+    }
+
+
+    protected static int slot( long key, int mask )
+    {
+      long h = key * 0x9e3779b97f4a7c15L;
+      return (int) ( h >>> 32 ) & mask;
+    }
+  }
+
+
+  public TokenIndex( Product[][] manufacturerProducts )
+  {
+    int q = 0;
+    for ( int m = 0; m < manufacturerProducts.length; m++ ) {
+      for ( Product product : manufacturerProducts[m] ) {
+        String model = product.model;
+        if ( product.family != null && model.length() > 0 ) {
+          models.add( finish( extend( START, model, 0, model.length() ) ), q );
+          int count = countRuns( model );
+          if ( count >= runCounts.length ) {
+            boolean[] bigger = new boolean[ count + 1 ];
+            System.arraycopy( runCounts, 0, bigger, 0, runCounts.length );
+            runCounts = bigger;
+          }
+          runCounts[ count ] = true;
+        } else if ( product.family == null && model.length() >= GRAM ) {
+          grams.add( gram( model, 0 ), q );
+        } else {
+          always.push( q );
+        }
+        q++;
+      }
+    }
+  }
+
+
+  /*
+   * candidates()
+   *
+   * Pushes onto out the number of every product that might match title.
+   * A product may be pushed more than once. runs is scratch space, for
+   * where each run of the title starts; the index itself is only read,
+   * so threads with their own scratch space can share it.
+   * The hash of an n-gram is carried on from that of the (n-1)-gram
+   * before it, so each run start costs one pass over its n-grams.
+   *
+   * Calls extend(), finish(), gram(), pushAll()
+   */
+  public void candidates( String title, IntStack runs, IntStack out )
+  {
+    pushAll( always, out );
+
+    // every n-gram of whole runs, for the n that models span
+    runs.clear();
+    for ( int i = 0; i < title.length(); i++ ) {
+      if ( i == 0 || ModelMatcher.isBoundary( title, i ) ) {
+        runs.push( i );
+      }
+    }
+    runs.push( title.length() );
+    for ( int r = 0; r < runs.size() - 1; r++ ) {
+      int max = Math.min( runCounts.length - 1, runs.size() - 1 - r );
+      long h = START;
+      for ( int k = 1; k <= max; k++ ) {
+        h = extend( h, title, runs.get( r + k - 1 ), runs.get( r + k ) );
+        if ( runCounts[k] ) {
+          pushAll( models.get( finish( h ) ), out );
+        }
+      }
+    }
+
+    // every GRAM characters, for the models that only need containing
+    if ( grams.size > 0 ) {
+      for ( int i = 0; i + GRAM <= title.length(); i++ ) {
+        pushAll( grams.get( gram( title, i ) ), out );
+      }
+    }
+  }
+
+
+  protected static void pushAll( IntStack products, IntStack out )
+  {
+    if ( products != null ) {
+      for ( int i = 0; i < products.size(); i++ ) {
+        out.push( products.get( i ) );
+      }
+    }
+  }
+
+
+  // the hash of no characters
+  protected static final long START = 0xcbf29ce484222325L;
+
+
+  /*
+   * extend()
+   *
+   * Carries hash h on over the characters of s from start up to end
+   * (FNV-1a). finish() mixes the result into a key.
+   */
+  protected static long extend( long h, String s, int start, int end )
+  {
+    for ( int i = start; i < end; i++ ) {
+      h = ( h ^ s.charAt( i ) ) * 0x100000001b3L;
+    }
+    return h;
+  }
+
+
+  protected static long finish( long h )
+  {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    return h ^ ( h >>> 33 );
+  }
+
+
+  /*
+   * gram()
+   *
+   * Packs the GRAM characters of s starting at i into a long.
+   */
+  protected static long gram( String s, int i )
+  {
+    long key = 0;
+    for ( int j = i; j < i + GRAM; j++ ) {
+      key = ( key << 16 ) | s.charAt( j );
+    }
+    return key;
+  }
+
+
+  /*
+   * countRuns()
+   *
+   * Returns the number of runs that s splits into.
+   */
+  protected static int countRuns( String s )
+  {
+    int count = 0;
+    for ( int i = 0; i < s.length(); i++ ) {
+      if ( i == 0 || ModelMatcher.isWordChar( s.charAt( i ) )
+          != ModelMatcher.isWordChar( s.charAt( i - 1 ) ) ) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Variant index for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Finds models that a title spells differently from the catalog, such as
+ * "dscw310" or "dsc w310" for "dsc-w310".
+ *
+ * Every model is reduced to a canonical key: its letters and digits,
+ * with the separators (spaces, hyphens and underscores) between them
+ * dropped. A model with any other punctuation, like "4.3" or
+ * "gxr (a12)", has no key; its punctuation is part of the model.
+ * Keys shorter than MIN_LENGTH aren't indexed either, since dropping the
+ * separators from a short model leaves too little to go on.
+ *
+ * A title is canonicalized the same way in one pass: from the start of
+ * each run of letters and digits, the runs that follow it across
+ * separators are joined on one by one, and each joined key is looked up,
+ * so all the ways of splitting a model are covered by a few hash probes.
+ * A key is only ever found made of whole runs, and never joined across a
+ * gap with digits on both sides: those are two numbers, as in
+ * "ex-z3 3.2mp", which isn't an "ex-z33".
+ *
+ * Products are numbered in manufacturer order, the way Match numbers
+ * them. A product found here still needs its family in the title, if it
+ * has one.
+ */
+
+import java.util.HashMap;
+
+public class VariantIndex
+{
+  public static final int MIN_LENGTH = 4;
+
+  // canonical keys, and the products whose models have them
+  protected HashMap<String,IntStack> keys = new HashMap<String,IntStack>();
+  // no key is longer than this
+  protected int maxLength = 0;
+
+
+  public VariantIndex( Product[][] manufacturerProducts )
+  {
+    int q = 0;
+    for ( int m = 0; m < manufacturerProducts.length; m++ ) {
+      for ( Product product : manufacturerProducts[m] ) {
+        String key = canonical( product.model );
+        if ( key != null && key.length() >= MIN_LENGTH ) {
+          add( key, q );
+          maxLength = Math.max( maxLength, key.length() );
+        }
+        q++;
+      }
+    }
+  }
+
+
+  /*
+   * add()
+   *
+   * Adds product q to the list for key.
+   */
+  protected void add( String key, int q )
+  {
+    IntStack products = keys.get( key );
+    if ( products == null ) {
+      products = new IntStack( 1 );
+      keys.put( key, products );
+    }
+    products.push( q );
+  }
+
+
+  /*
+   * canonical()
+   *
+   * Returns the letters and digits of s with the separators dropped,
+   * or null if s has any other characters.
+   */
+  public static String canonical( String s )
+  {
+    StringBuilder key = new StringBuilder( s.length() );
+    for ( int i = 0; i < s.length(); i++ ) {
+      char c = s.charAt( i );
+      if ( Character.isLetterOrDigit( c ) ) {
+        key.append( c );
+      } else if ( !isSeparator( c ) ) {
+        return null;
+      }
+    }
+    return key.toString();
+  }
+
+
+  /*
+   * candidates()
+   *
+   * Pushes onto out the number of every product whose model's key is
+   * spelled out in title. A product may be pushed more than once. key is
+   * scratch space; the index itself is only read, so threads with their
+   * own scratch space can share it.
+   */
+  public void candidates( String title, StringBuilder key, IntStack out )
+  {
+    int n = title.length();
+    for ( int i = 0; i < n; i++ ) {
+      if ( !Character.isLetterOrDigit( title.charAt( i ) )
+          || ( i > 0 && Character.isLetterOrDigit( title.charAt( i - 1 ) ) ) ) {
+        continue;
+      }
+
+      // join runs on from here until the key gets too long
+      key.setLength( 0 );
+      int j = i;
+      for (;;) {
+        while ( j < n && Character.isLetterOrDigit( title.charAt( j ) ) ) {
+          key.append( title.charAt( j++ ) );
+        }
+        if ( key.length() > maxLength ) {
+          break;
+        }
+        if ( key.length() >= MIN_LENGTH ) {
+          TokenIndex.pushAll( keys.get( key.toString() ), out );
+        }
+        int k = j;
+        while ( k < n && isSeparator( title.charAt( k ) ) ) {
+          k++;
+        }
+        if ( k == j || k == n
+            || !Character.isLetterOrDigit( title.charAt( k ) )
+            || ( Character.isDigit( title.charAt( j - 1 ) )
+              && Character.isDigit( title.charAt( k ) ) ) ) {
+          break;
+        }
+        j = k;
+      }
+    }
+  }
+
+
+  protected static boolean isSeparator( char c )
+  {
+    return c == ' ' || c == '-' || c == '_';
+  }
+}
@@ -0,0 +1,408 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.nio.CharBuffer;
+
+/**
+ * A FastJSONTokener is a JSONTokener over text that is already in memory.
+ * The text is read where it lies, a String or a char array, with a plain
+ * cursor, so there is no Reader underneath and no limit on how far back()
+ * can step. Strings, keys, and unquoted values without escapes are cut
+ * out of the text in one piece instead of being appended a character at
+ * a time.
+ * <p>
+ * The JSONObject and JSONArray constructors that take a String use a
+ * FastJSONTokener.
+ */
+public class FastJSONTokener extends JSONTokener {
+
+    private final int    begin;
+    private final int    end;
+    private int          pos;
+    private final CharSequence source;
+
+
+    /**
+     * Construct a FastJSONTokener over part of a char array. The array is
+     * not copied, so it must not be changed while the tokener is in use.
+     *
+     * @param chars     The source characters.
+     * @param offset    The index of the first character to read.
+     * @param length    The number of characters to read.
+     */
+    public FastJSONTokener(char[] chars, int offset, int length) {
+        this(CharBuffer.wrap(chars), offset, length);
+    }
+
+
+    /**
+     * Construct a FastJSONTokener over a char array.
+     *
+     * @param chars     The source characters.
+     */
+    public FastJSONTokener(char[] chars) {
+        this(chars, 0, chars.length);
+    }
+
+
+    /**
+     * Construct a FastJSONTokener over part of a CharSequence. The
+     * characters are read in place, so the sequence must not change while
+     * the tokener is in use.
+     *
+     * @param s         The source characters.
+     * @param offset    The index of the first character to read.
+     * @param length    The number of characters to read.
+     */
+    public FastJSONTokener(CharSequence s, int offset, int length) {
+        super();
+        this.source = s;
+        this.begin = offset;
+        this.end = offset + length;
+        this.pos = offset;
+    }
+
+
+    /**
+     * Construct a FastJSONTokener over a CharSequence, such as a String.
+     * The characters are read in place, not copied.
+     *
+     * @param s     A source string.
+     */
+    public FastJSONTokener(CharSequence s) {
+        this(s, 0, s.length());
+    }
+
+
+    /**
+     * Back up one character. Unlike a JSONTokener, a FastJSONTokener can
+     * back up any number of characters.
+     */
+    public void back() throws JSONException {
+        if (this.pos <= this.begin) {
+            throw new JSONException("Stepping back past the start is not supported");
+        }
+        this.pos -= 1;
+    }
+
+
+    public boolean end() {
+        return this.pos > this.end;
+    }
+
+
+    /**
+     * Determine if the source string still contains characters that next()
+     * can consume.
+     * @return true if not yet at the end of the source.
+     */
+    public boolean more() {
+        return this.pos < this.end;
+    }
+
+
+    /**
+     * Get the next character in the source string.
+     *
+     * @return The next character, or 0 if past the end of the source string.
+     */
+    public char next() {
+        int i = this.pos;
+        this.pos = i + 1;
+        return i < this.end ? this.source.charAt(i) : 0;
+    }
+
+
+    /**
+     * Get the next n characters.
+     *
+     * @param n     The number of characters to take.
+     * @return      A string of n characters.
+     * @throws JSONException
+     *   Substring bounds error if there are not
+     *   n characters remaining in the source string.
+     */
+    public String next(int n) throws JSONException {
+        if (this.pos + n > this.end) {
+            throw this.syntaxError("Substring bounds error");
+        }
+        String string = this.text(this.pos, this.pos + n);
+        this.pos += n;
+        return string;
+    }
+
+
+    /**
+     * Get the next char in the string, skipping whitespace.
+     * @return  A character, or 0 if there are no more characters.
+     */
+    public char nextClean() {
+        int i = this.pos;
+        while (i < this.end) {
+            char c = this.source.charAt(i);
+            i += 1;
+            if (c == 0 || c > ' ') {
+                this.pos = i;
+                return c;
+            }
+        }
+        this.pos = this.end + 1;
+        return 0;
+    }
+
+
+    /**
+     * Return the characters up to the next close quote character and look
+     * them up in an array of names. A key without escapes is compared in
+     * place in the source.
+     * @param quote The quoting character.
+     * @param names The names to look for.
+     * @return      The index of the name in names, or -1 if it is not there.
+     * @throws JSONException Unterminated string.
+     */
+    public int nextName(char quote, String[] names) throws JSONException {
+        int start = this.pos;
+        for (int i = start; i < this.end; i += 1) {
+            char c = this.source.charAt(i);
+            if (c == quote) {
+                this.pos = i + 1;
+                return indexOf(names, this.source, start, i - start);
+            }
+            if (c == '\\' || c == '\n' || c == '\r' || c == 0) {
+                break;
+            }
+        }
+        return super.nextName(quote, names);
+    }
+
+
+    /**
+     * Return the characters up to the next close quote character.
+     * Backslash processing is done. A string without escapes is cut out of
+     * the source in one piece, or found in the SymbolTable if it is
+     * short.
+     * @param quote The quoting character, either
+     *      <code>"</code>&nbsp;<small>(double quote)</small> or
+     *      <code>'</code>&nbsp;<small>(single quote)</small>.
+     * @return      A String.
+     * @throws JSONException Unterminated string.
+     */
+    public String nextString(char quote) throws JSONException {
+        int start = this.pos;
+        int i = start;
+        while (i < this.end) {
+            char c = this.source.charAt(i);
+            if (c == quote) {
+                this.pos = i + 1;
+                return SymbolTable.intern(this.source, start, i - start);
+            }
+            if (c == '\\' || c == '\n' || c == '\r' || c == 0) {
+                break;
+            }
+            i += 1;
+        }
+
+// There is an escape (or the string is unterminated), so finish the string
+// a character at a time after the part that has already been scanned.
+
+        StringBuilder sb = new StringBuilder(i - start + 16);
+        sb.append(this.source, start, i);
+        this.pos = i;
+        for (;;) {
+            char c = this.next();
+            switch (c) {
+            case 0:
+            case '\n':
+            case '\r':
+                throw this.syntaxError("Unterminated string");
+            case '\\':
+                sb.append(this.nextEscape());
+                break;
+            default:
+                if (c == quote) {
+                    return sb.toString();
+                }
+                sb.append(c);
+            }
+        }
+    }
+
+
+    /**
+     * Get the text up but not including the specified character or the
+     * end of line, whichever comes first.
+     * @param  delimiter A delimiter character.
+     * @return   A string.
+     */
+    public String nextTo(char delimiter) {
+        int start = this.pos;
+        int i = start;
+        while (i < this.end) {
+            char c = this.source.charAt(i);
+            if (c == delimiter || c == 0 || c == '\n' || c == '\r') {
+                break;
+            }
+            i += 1;
+        }
+        this.pos = i < this.end ? i : this.end + 1;
+        return this.text(start, i).trim();
+    }
+
+
+    /**
+     * Get the text up but not including one of the specified delimiter
+     * characters or the end of line, whichever comes first.
+     * @param delimiters A set of delimiter characters.
+     * @return A string, trimmed.
+     */
+    public String nextTo(String delimiters) {
+        int start = this.pos;
+        int i = start;
+        while (i < this.end) {
+            char c = this.source.charAt(i);
+            if (delimiters.indexOf(c) >= 0 || c == 0 ||
+                    c == '\n' || c == '\r') {
+                break;
+            }
+            i += 1;
+        }
+        this.pos = i < this.end ? i : this.end + 1;
+        return this.text(start, i).trim();
+    }
+
+
+    /**
+     * Get the next value. The value can be a Boolean, Double, Integer,
+     * JSONArray, JSONObject, Long, or String, or the JSONObject.NULL object.
+     * @throws JSONException If syntax error.
+     *
+     * @return An object.
+     */
+    public Object nextValue() throws JSONException {
+        char c = this.nextClean();
+
+        switch (c) {
+            case '"':
+            case '\'':
+                return this.nextString(c);
+            case '{':
+                this.back();
+                return new JSONObject(this);
+            case '[':
+                this.back();
+                return new JSONArray(this);
+        }
+
+        /*
+         * Handle unquoted text the same way JSONTokener does, but find the
+         * end of it first and take it out of the source in one piece.
+         */
+
+        int start = this.pos - 1;
+        int i = start;
+        while (i < this.end) {
+            c = this.source.charAt(i);
+            if (c < ' ' || ",:]}/\\\"[{;=#".indexOf(c) >= 0) {
+                break;
+            }
+            i += 1;
+        }
+        this.pos = i;
+
+        String string = this.text(start, i).trim();
+        if ("".equals(string)) {
+            throw this.syntaxError("Missing value");
+        }
+        return JSONObject.stringToValue(string);
+    }
+
+
+    /**
+     * Look ahead without consuming anything.
+     * @param ahead How far past the next character to look; 0 is the
+     *  character that next() would return.
+     * @return The character, or 0 if it is past the end of the source.
+     */
+    public char peek(int ahead) {
+        int i = this.pos + ahead;
+        return i >= this.begin && i < this.end ? this.source.charAt(i) : 0;
+    }
+
+
+    /**
+     * Skip characters until the next character is the requested character.
+     * If the requested character is not found, no characters are skipped.
+     * @param to A character to skip to.
+     * @return The requested character, or zero if the requested character
+     * is not found.
+     */
+    public char skipTo(char to) {
+        for (int i = this.pos; i < this.end; i += 1) {
+            if (this.source.charAt(i) == to) {
+                this.pos = i;
+                return to;
+            }
+        }
+        return 0;
+    }
+
+
+    /**
+     * Get the source characters from start up to end as a String.
+     */
+    private String text(int start, int end) {
+        return this.source.subSequence(start, end).toString();
+    }
+
+
+    /**
+     * Get the number of characters read so far.
+     * @return The index of the next character in the source.
+     */
+    long index() {
+        return this.pos - this.begin;
+    }
+
+
+    /**
+     * Make a printable string of this FastJSONTokener.
+     *
+     * @return " at {index} [character {character} line {line}]"
+     */
+    public String toString() {
+        int  stop = Math.min(this.pos, this.end);
+        long line = 1;
+        long character = stop - this.begin + 1;
+        for (int i = this.begin; i < stop; i += 1) {
+            if (this.source.charAt(i) == '\n') {
+                line += 1;
+                character = stop - i - 1;
+            }
+        }
+        return " at " + this.index() + " [character " + character +
+            " line " + line + "]";
+    }
+}
@@ -131,6 +131,14 @@ public class JSONObject {
     private final Map map;
 
 
+    /**
+     * The span of source characters that the object was read from, or -1
+     * if the object was not made by a projecting constructor.
+     */
+    private long sourceStart = -1;
+    private long sourceEnd = -1;
+
+
     /**
      * It is sometimes more convenient and less ambiguous to have a
      * <code>NULL</code> object than to use Java's <code>null</code> value.
@@ -225,6 +233,113 @@ public class JSONObject {
     }
 
 
+    /**
+     * Construct a JSONObject from a JSONTokener, keeping only the named keys.
+     * The values of all other keys are skipped without being built. The
+     * span of source characters that the object was read from is recorded,
+     * so that the original text can be recovered later with sourceStart()
+     * and sourceEnd().
+     * @param x A JSONTokener object containing the source string.
+     * @param names An array of strings, the keys to keep.
+     * @throws JSONException If there is a syntax error in the source string
+     *  or a duplicated key.
+     */
+    public JSONObject(JSONTokener x, String[] names) throws JSONException {
+        this();
+        Object[] values = new Object[names.length];
+
+        x.nextClean();
+        x.back();
+        this.sourceStart = x.index();
+        readFields(x, names, values);
+        this.sourceEnd = x.index();
+        for (int i = 0; i < names.length; i += 1) {
+            if (values[i] != null) {
+                this.put(names[i], values[i]);
+            }
+        }
+    }
+
+
+    /**
+     * Read an object from a JSONTokener without making a JSONObject. The
+     * value of each named key is stored in values at the same index as its
+     * name, and the values of all other keys are skipped without being
+     * built. This lets a caller map an object straight into fields of its
+     * own, without any hashing.
+     * @param x A JSONTokener object containing the source string.
+     * @param names An array of strings, the keys to keep.
+     * @param values An array at least as long as names, to hold the values.
+     *  The values of keys that are not in the object are set to null.
+     * @throws JSONException If there is a syntax error in the source string
+     *  or a duplicated key.
+     */
+    public static void readFields(JSONTokener x, String[] names,
+            Object[] values) throws JSONException {
+        char c;
+        int  i;
+
+        for (i = 0; i < names.length; i += 1) {
+            values[i] = null;
+        }
+        if (x.nextClean() != '{') {
+            throw x.syntaxError("A JSONObject text must begin with '{'");
+        }
+        for (;;) {
+            c = x.nextClean();
+            switch (c) {
+            case 0:
+                throw x.syntaxError("A JSONObject text must end with '}'");
+            case '}':
+                return;
+            case '"':
+            case '\'':
+                i = x.nextName(c, names);
+                break;
+            default:
+                x.back();
+                i = indexOf(names, x.nextValue().toString());
+            }
+
+// The key is followed by ':'. We will also tolerate '=' or '=>'.
+
+            c = x.nextClean();
+            if (c == '=') {
+                if (x.next() != '>') {
+                    x.back();
+                }
+            } else if (c != ':') {
+                throw x.syntaxError("Expected a ':' after a key");
+            }
+            if (i >= 0) {
+                if (values[i] != null) {
+                    throw new JSONException("Duplicate key \"" + names[i] +
+                        "\"");
+                }
+                values[i] = x.nextValue();
+            } else {
+                x.skipValue();
+            }
+
+// Pairs are separated by ','. We will also tolerate ';'.
+
+            switch (x.nextClean()) {
+            case ';':
+            case ',':
+                if (x.nextClean() == '}') {
+                    return;
+                }
+                x.back();
+                break;
+            case '}':
+                return;
+            default:
+                throw x.syntaxError("Expected a ',' or '}'");
+            }
+        }
+    }
+
+
     /**
      * Construct a JSONObject from a Map.
      *
@@ -306,7 +421,22 @@ public class JSONObject {
      *  string or a duplicated key.
      */
     public JSONObject(String source) throws JSONException {
-        this(new JSONTokener(source));
+        this(new FastJSONTokener(source));
+    }
+
+
+    /**
+     * Construct a JSONObject from a source JSON text string, keeping only
+     * the named keys.
+     * @param source    A string beginning
+     *  with <code>{</code>&nbsp;<small>(left brace)</small> and ending
+     *  with <code>}</code>&nbsp;<small>(right brace)</small>.
+     * @param names An array of strings, the keys to keep.
+     * @exception JSONException If there is a syntax error in the source
+     *  string or a duplicated key.
+     */
+    public JSONObject(String source, String[] names) throws JSONException {
+        this(new FastJSONTokener(source), names);
     }
 
 
@@ -679,6 +809,20 @@ public class JSONObject {
     }
 
 
+    /**
+     * Find a name in an array of names.
+     * @return The index of the name, or -1 if it is not there.
+     */
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i += 1) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
     /**
      * Determine if the value associated with the key is null or if there is
      *  no value.
@@ -1220,6 +1364,28 @@ public class JSONObject {
         return this.map.remove(key);
     }
 
+    /**
+     * Get the position in the source of the '{' that the object was read
+     * from.
+     * @return The index of the first character of the object, or -1 if it
+     *  was not made by a projecting constructor.
+     */
+    public long sourceStart() {
+        return this.sourceStart;
+    }
+
+
+    /**
+     * Get the position in the source just past the '}' that ended the
+     * object.
+     * @return The index after the last character of the object, or -1 if
+     *  it was not made by a projecting constructor.
+     */
+    public long sourceEnd() {
+        return this.sourceEnd;
+    }
+
+
     /**
      * Try to convert a string into a number, boolean, or null. If the string
      * can't be converted, return the string.
@@ -44,11 +44,27 @@ public class JSONTokener {
     private boolean eof;
     private long    index;
     private long    line;
+    private char[]  buffer = new char[32];
     private char    previous;
     private Reader  reader;
     private boolean usePrevious;
 
 
+    /**
+     * Construct a JSONTokener that does not read from a Reader. This is for
+     * subclasses that keep their source some other way, and so override
+     * every method that reads it.
+     */
+    protected JSONTokener() {
+        this.eof = false;
+        this.usePrevious = false;
+        this.previous = 0;
+        this.index = 0;
+        this.character = 1;
+        this.line = 1;
+    }
+
+
     /**
      * Construct a JSONTokener from a Reader.
      *
@@ -241,7 +257,8 @@ public class JSONTokener {
      * Return the characters up to the next close quote character.
      * Backslash processing is done. The formal JSON format does not
      * allow strings in single quotes, but an implementation is allowed to
-     * accept them.
+     * accept them. Short strings come from the SymbolTable, so strings
+     * that repeat share one instance.
      * @param quote The quoting character, either
      *      <code>"</code>&nbsp;<small>(double quote)</small> or
      *      <code>'</code>&nbsp;<small>(single quote)</small>.
@@ -249,52 +266,29 @@ public class JSONTokener {
      * @throws JSONException Unterminated string.
      */
     public String nextString(char quote) throws JSONException {
-        char c;
-        StringBuffer sb = new StringBuffer();
+        int length = 0;
         for (;;) {
-            c = this.next();
+            char c = this.next();
             switch (c) {
             case 0:
             case '\n':
             case '\r':
                 throw this.syntaxError("Unterminated string");
             case '\\':
-                c = this.next();
-                switch (c) {
-                case 'b':
-                    sb.append('\b');
-                    break;
-                case 't':
-                    sb.append('\t');
-                    break;
-                case 'n':
-                    sb.append('\n');
-                    break;
-                case 'f':
-                    sb.append('\f');
-                    break;
-                case 'r':
-                    sb.append('\r');
-                    break;
-                case 'u':
-                    sb.append((char)Integer.parseInt(this.next(4), 16));
-                    break;
-                case '"':
-                case '\'':
-                case '\\':
-                case '/':
-                    sb.append(c);
-                    break;
-                default:
-                    throw this.syntaxError("Illegal escape.");
-                }
+                c = this.nextEscape();
                 break;
             default:
                 if (c == quote) {
-                    return sb.toString();
+                    return SymbolTable.intern(this.buffer, 0, length);
                 }
-                sb.append(c);
             }
+            if (length == this.buffer.length) {
+                char[] bigger = new char[length * 2];
+                System.arraycopy(this.buffer, 0, bigger, 0, length);
+                this.buffer = bigger;
+            }
+            this.buffer[length] = c;
+            length += 1;
         }
     }
 
@@ -343,6 +337,208 @@ public class JSONTokener {
     }
 
 
+    /**
+     * Return the characters up to the next close quote character and look
+     * them up in an array of names. Backslash processing is done, but no
+     * String is made for the key; the characters are collected in the same
+     * reusable buffer that nextString() uses.
+     * @param quote The quoting character, either
+     *      <code>"</code>&nbsp;<small>(double quote)</small> or
+     *      <code>'</code>&nbsp;<small>(single quote)</small>.
+     * @param names The names to look for.
+     * @return      The index of the name in names, or -1 if it is not there.
+     * @throws JSONException Unterminated string.
+     */
+    public int nextName(char quote, String[] names) throws JSONException {
+        int length = 0;
+        for (;;) {
+            char c = this.next();
+            switch (c) {
+            case 0:
+            case '\n':
+            case '\r':
+                throw this.syntaxError("Unterminated string");
+            case '\\':
+                c = this.nextEscape();
+                break;
+            default:
+                if (c == quote) {
+                    return indexOf(names, this.buffer, 0, length);
+                }
+            }
+            if (length == this.buffer.length) {
+                char[] bigger = new char[length * 2];
+                System.arraycopy(this.buffer, 0, bigger, 0, length);
+                this.buffer = bigger;
+            }
+            this.buffer[length] = c;
+            length += 1;
+        }
+    }
+
+
+    /**
+     * Find the name that is spelled by the length characters of chars
+     * starting at offset.
+     * @return The index of the name in names, or -1 if it is not there.
+     */
+    static int indexOf(String[] names, char[] chars, int offset, int length) {
+        for (int i = 0; i < names.length; i += 1) {
+            String name = names[i];
+            if (name.length() == length) {
+                int j = 0;
+                while (j < length && name.charAt(j) == chars[offset + j]) {
+                    j += 1;
+                }
+                if (j == length) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Find the name that is spelled by the length characters of chars
+     * starting at offset.
+     * @return The index of the name in names, or -1 if it is not there.
+     */
+    static int indexOf(String[] names, CharSequence chars, int offset, int length) {
+        for (int i = 0; i < names.length; i += 1) {
+            String name = names[i];
+            if (name.length() == length) {
+                int j = 0;
+                while (j < length && name.charAt(j) == chars.charAt(offset + j)) {
+                    j += 1;
+                }
+                if (j == length) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Get the character that a backslash escape stands for. The backslash
+     * has already been consumed.
+     * @return The unescaped character.
+     * @throws JSONException Illegal escape.
+     */
+    char nextEscape() throws JSONException {
+        char c = this.next();
+        switch (c) {
+        case 'b':
+            return '\b';
+        case 't':
+            return '\t';
+        case 'n':
+            return '\n';
+        case 'f':
+            return '\f';
+        case 'r':
+            return '\r';
+        case 'u':
+            return (char)Integer.parseInt(this.next(4), 16);
+        case '"':
+        case '\'':
+        case '\\':
+        case '/':
+            return c;
+        default:
+            throw this.syntaxError("Illegal escape.");
+        }
+    }
+
+
+    /**
+     * Skip the next value without building it. Strings are scanned for
+     * their close quote, objects and arrays are skipped by counting their
+     * brackets, and unquoted text is skipped up to the next formatting
+     * character. Nothing is allocated.
+     * @throws JSONException If syntax error.
+     */
+    public void skipValue() throws JSONException {
+        char c = this.nextClean();
+
+        switch (c) {
+            case '"':
+            case '\'':
+                this.skipString(c);
+                return;
+            case '{':
+            case '[':
+                int depth = 1;
+                while (depth > 0) {
+                    c = this.next();
+                    switch (c) {
+                    case 0:
+                        throw this.syntaxError("Unterminated value");
+                    case '"':
+                    case '\'':
+                        this.skipString(c);
+                        break;
+                    case '{':
+                    case '[':
+                        depth += 1;
+                        break;
+                    case '}':
+                    case ']':
+                        depth -= 1;
+                        break;
+                    }
+                }
+                return;
+        }
+
+        // Unquoted text, accepted the same way as nextValue() accepts it.
+
+        boolean empty = true;
+        while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
+            if (c > ' ') {
+                empty = false;
+            }
+            c = this.next();
+        }
+        this.back();
+        if (empty) {
+            throw this.syntaxError("Missing value");
+        }
+    }
+
+
+    /**
+     * Skip the characters up to and including the next close quote
+     * character, the way nextString() would read them.
+     * @param quote The quoting character.
+     * @throws JSONException Unterminated string.
+     */
+    private void skipString(char quote) throws JSONException {
+        for (;;) {
+            char c = this.next();
+            if (c == 0 || c == '\n' || c == '\r') {
+                throw this.syntaxError("Unterminated string");
+            }
+            if (c == '\\') {
+                this.next();
+            } else if (c == quote) {
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Get the number of characters read so far.
+     * @return The index of the next character in the source.
+     */
+    long index() {
+        return this.index;
+    }
+
+
     /**
      * Get the next value. The value can be a Boolean, Double, Integer,
      * JSONArray, JSONObject, Long, or String, or the JSONObject.NULL object.
@@ -0,0 +1,155 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The SymbolTable shares one String instance between all the short strings
+ * that a tokener reads with the same characters, such as the keys of every
+ * object in a file, or values like currency codes that repeat thousands of
+ * times. A string is looked up by hashing its characters where they lie in
+ * the tokener's buffer, so no String is made for a string that is already
+ * in the table.
+ * <p>
+ * The table is bounded. Each hash selects a single slot, and a string that
+ * misses replaces whatever was in its slot, so strings that keep coming up
+ * stay in the table and one-off strings wash through it.
+ * <p>
+ * The table is shared by all tokeners without locking. That is safe
+ * because a slot only ever holds a complete, immutable String, and a
+ * String found in a slot is only used after its characters are compared.
+ */
+final class SymbolTable {
+
+    /**
+     * Strings longer than this are never put in the table.
+     */
+    static final int MAX_LENGTH = 32;
+
+    private static final int SIZE = 4096;
+
+    private static final String[] symbols = new String[SIZE];
+
+
+    private SymbolTable() {
+    }
+
+
+    /**
+     * Get the String spelled by length characters of chars starting at
+     * offset. If it is short enough, the instance in the table is returned,
+     * and a new String is only made if the table does not already have one.
+     * @return A String with the same characters.
+     */
+    static String intern(char[] chars, int offset, int length) {
+        if (length > MAX_LENGTH) {
+            return new String(chars, offset, length);
+        }
+        int hash = 0;
+        for (int i = offset; i < offset + length; i += 1) {
+            hash = 31 * hash + chars[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (SIZE - 1);
+
+        String symbol = symbols[slot];
+        if (symbol != null && symbol.length() == length) {
+            int j = 0;
+            while (j < length && symbol.charAt(j) == chars[offset + j]) {
+                j += 1;
+            }
+            if (j == length) {
+                return symbol;
+            }
+        }
+        symbol = new String(chars, offset, length);
+        symbols[slot] = symbol;
+        return symbol;
+    }
+
+
+    /**
+     * Get the String spelled by length characters of chars starting at
+     * offset, the same way as for a char array, without copying chars.
+     * @return A String with the same characters.
+     */
+    static String intern(CharSequence chars, int offset, int length) {
+        if (length > MAX_LENGTH) {
+            return chars.subSequence(offset, offset + length).toString();
+        }
+        int hash = 0;
+        for (int i = offset; i < offset + length; i += 1) {
+            hash = 31 * hash + chars.charAt(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (SIZE - 1);
+
+        String symbol = symbols[slot];
+        if (symbol != null && symbol.length() == length) {
+            int j = 0;
+            while (j < length && symbol.charAt(j) == chars.charAt(offset + j)) {
+                j += 1;
+            }
+            if (j == length) {
+                return symbol;
+            }
+        }
+        symbol = chars.subSequence(offset, offset + length).toString();
+        symbols[slot] = symbol;
+        return symbol;
+    }
+
+
+    /**
+     * Get the String spelled by length ASCII bytes of bytes starting at
+     * offset. ASCII strings hash to the same slots as the same characters
+     * in a char array, so a string read from bytes and one read from chars
+     * share one instance.
+     * @return A String with the same characters.
+     */
+    static String intern(byte[] bytes, int offset, int length) {
+        if (length > MAX_LENGTH) {
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        }
+        int hash = 0;
+        for (int i = offset; i < offset + length; i += 1) {
+            hash = 31 * hash + bytes[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (SIZE - 1);
+
+        String symbol = symbols[slot];
+        if (symbol != null && symbol.length() == length) {
+            int j = 0;
+            while (j < length && symbol.charAt(j) == bytes[offset + j]) {
+                j += 1;
+            }
+            if (j == length) {
+                return symbol;
+            }
+        }
+        symbol = new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        symbols[slot] = symbol;
+        return symbol;
+    }
+}
@@ -0,0 +1,459 @@
+package org.json;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * A UTF8JSONTokener is a JSONTokener that reads UTF-8 bytes directly, from
+ * a byte array or a ByteBuffer such as a mapped file. The input is never
+ * decoded as a whole. All of the JSON syntax is ASCII, so the tokener
+ * steps through bytes, and multi-byte characters are only decoded inside
+ * the strings and values it returns. Strings that are pure ASCII, which is
+ * almost all of them, are made without going through a decoder at all.
+ * <p>
+ * next() and nextClean() return one byte at a time, so a character outside
+ * ASCII comes back from them as its separate bytes. Every method that
+ * returns text decodes it properly. The positions reported by index() and
+ * recorded by a projecting JSONObject are byte offsets.
+ * <p>
+ * The tokener reads the buffer with absolute gets, so the buffer's own
+ * position and limit are never changed.
+ */
+public class UTF8JSONTokener extends JSONTokener {
+
+    private final int        begin;
+    private final int        end;
+    private int              pos;
+    private byte[]           scratch;
+    private final ByteBuffer source;
+
+
+    /**
+     * Construct a UTF8JSONTokener over the remaining bytes of a ByteBuffer.
+     *
+     * @param buffer    The UTF-8 source bytes, from position to limit.
+     */
+    public UTF8JSONTokener(ByteBuffer buffer) {
+        super();
+        this.source = buffer;
+        this.begin = buffer.position();
+        this.end = buffer.limit();
+        this.pos = this.begin;
+    }
+
+
+    /**
+     * Construct a UTF8JSONTokener over part of a byte array. The array is
+     * not copied, so it must not be changed while the tokener is in use.
+     *
+     * @param bytes     The UTF-8 source bytes.
+     * @param offset    The index of the first byte to read.
+     * @param length    The number of bytes to read.
+     */
+    public UTF8JSONTokener(byte[] bytes, int offset, int length) {
+        this(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+
+    /**
+     * Construct a UTF8JSONTokener over a byte array.
+     *
+     * @param bytes     The UTF-8 source bytes.
+     */
+    public UTF8JSONTokener(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+
+    /**
+     * Back up one byte. Any number of bytes can be backed up.
+     */
+    public void back() throws JSONException {
+        if (this.pos <= this.begin) {
+            throw new JSONException("Stepping back past the start is not supported");
+        }
+        this.pos -= 1;
+    }
+
+
+    /**
+     * Make a String from length bytes of the source starting at start.
+     * @param ascii true if the bytes are known to be ASCII, so that they
+     *  can skip the decoder and be looked up in the SymbolTable.
+     * @return The decoded String.
+     */
+    private String decode(int start, int length, boolean ascii) {
+        byte[] bytes;
+        int    offset;
+        if (this.source.hasArray()) {
+            bytes = this.source.array();
+            offset = this.source.arrayOffset() + start;
+        } else {
+            if (this.scratch == null || this.scratch.length < length) {
+                this.scratch = new byte[Math.max(length, 64)];
+            }
+            this.source.get(start, this.scratch, 0, length);
+            bytes = this.scratch;
+            offset = 0;
+        }
+        return ascii
+            ? SymbolTable.intern(bytes, offset, length)
+            : new String(bytes, offset, length, StandardCharsets.UTF_8);
+    }
+
+
+    public boolean end() {
+        return this.pos > this.end;
+    }
+
+
+    /**
+     * Determine if the source still contains bytes that next() can consume.
+     * @return true if not yet at the end of the source.
+     */
+    public boolean more() {
+        return this.pos < this.end;
+    }
+
+
+    /**
+     * Get the next byte in the source, as a char.
+     *
+     * @return The next byte, or 0 if past the end of the source.
+     */
+    public char next() {
+        int i = this.pos;
+        this.pos = i + 1;
+        return i < this.end ? (char) (this.source.get(i) & 0xff) : 0;
+    }
+
+
+    /**
+     * Get the next n characters. A multi-byte character counts once, or
+     * twice if it needs a surrogate pair.
+     *
+     * @param n     The number of characters to take.
+     * @return      A string of n characters.
+     * @throws JSONException
+     *   Substring bounds error if there are not
+     *   n characters remaining in the source.
+     */
+    public String next(int n) throws JSONException {
+        int     i = this.pos;
+        boolean ascii = true;
+        while (n > 0) {
+            if (i >= this.end) {
+                throw this.syntaxError("Substring bounds error");
+            }
+            byte b = this.source.get(i);
+            if (b >= 0) {
+                i += 1;
+                n -= 1;
+            } else {
+                ascii = false;
+                if ((b & 0xf8) == 0xf0) {
+                    i += 4;
+                    n -= 2;
+                } else if ((b & 0xf0) == 0xe0) {
+                    i += 3;
+                    n -= 1;
+                } else {
+                    i += 2;
+                    n -= 1;
+                }
+            }
+        }
+        i = Math.min(i, this.end);
+        String string = this.decode(this.pos, i - this.pos, ascii);
+        this.pos = i;
+        return string;
+    }
+
+
+    /**
+     * Get the next byte in the source, skipping whitespace.
+     * @return  A byte as a char, or 0 if there are no more bytes.
+     */
+    public char nextClean() {
+        int i = this.pos;
+        while (i < this.end) {
+            int c = this.source.get(i) & 0xff;
+            i += 1;
+            if (c == 0 || c > ' ') {
+                this.pos = i;
+                return (char) c;
+            }
+        }
+        this.pos = this.end + 1;
+        return 0;
+    }
+
+
+    /**
+     * Return the characters up to the next close quote character and look
+     * them up in an array of names. An ASCII key without escapes is
+     * compared in place in the source, without making a String.
+     * @param quote The quoting character.
+     * @param names The names to look for.
+     * @return      The index of the name in names, or -1 if it is not there.
+     * @throws JSONException Unterminated string.
+     */
+    public int nextName(char quote, String[] names) throws JSONException {
+        int start = this.pos;
+        for (int i = start; i < this.end; i += 1) {
+            byte b = this.source.get(i);
+            if (b == quote) {
+                this.pos = i + 1;
+                return this.indexOf(names, start, i - start);
+            }
+            if (b < 0 || b == '\\' || b == '\n' || b == '\r' || b == 0) {
+                break;
+            }
+        }
+
+// The key has an escape or a character outside ASCII, so make it a String.
+
+        String key = this.nextString(quote);
+        for (int i = 0; i < names.length; i += 1) {
+            if (names[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Find the name that is spelled by length ASCII bytes of the source
+     * starting at start.
+     * @return The index of the name in names, or -1 if it is not there.
+     */
+    private int indexOf(String[] names, int start, int length) {
+        for (int i = 0; i < names.length; i += 1) {
+            String name = names[i];
+            if (name.length() == length) {
+                int j = 0;
+                while (j < length &&
+                        name.charAt(j) == this.source.get(start + j)) {
+                    j += 1;
+                }
+                if (j == length) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Return the characters up to the next close quote character.
+     * Backslash processing is done. The bytes of the string are scanned
+     * first; a string without escapes is then made in one piece, through
+     * the SymbolTable if it is ASCII, or through the UTF-8 decoder if not.
+     * @param quote The quoting character, either
+     *      <code>"</code>&nbsp;<small>(double quote)</small> or
+     *      <code>'</code>&nbsp;<small>(single quote)</small>.
+     * @return      A String.
+     * @throws JSONException Unterminated string.
+     */
+    public String nextString(char quote) throws JSONException {
+        StringBuilder sb = null;
+        int start = this.pos;
+        for (;;) {
+            int     i = start;
+            boolean ascii = true;
+            byte    b = 0;
+            while (i < this.end) {
+                b = this.source.get(i);
+                if (b == quote || b == '\\' || b == '\n' || b == '\r' ||
+                        b == 0) {
+                    break;
+                }
+                if (b < 0) {
+                    ascii = false;
+                }
+                i += 1;
+            }
+            if (i >= this.end || (b != quote && b != '\\')) {
+                this.pos = i + 1;
+                throw this.syntaxError("Unterminated string");
+            }
+
+            String run = this.decode(start, i - start, ascii);
+            this.pos = i + 1;
+            if (b == quote) {
+                if (sb == null) {
+                    return run;
+                }
+                return sb.append(run).toString();
+            }
+
+// A backslash: keep what we have and carry on after the escape.
+
+            if (sb == null) {
+                sb = new StringBuilder(run.length() + 16);
+            }
+            sb.append(run);
+            sb.append(this.nextEscape());
+            start = this.pos;
+        }
+    }
+
+
+    /**
+     * Get the text up but not including the specified character or the
+     * end of line, whichever comes first.
+     * @param  delimiter A delimiter character.
+     * @return   A string.
+     */
+    public String nextTo(char delimiter) {
+        return this.nextTo(String.valueOf(delimiter));
+    }
+
+
+    /**
+     * Get the text up but not including one of the specified delimiter
+     * characters or the end of line, whichever comes first. Only ASCII
+     * delimiters can be found.
+     * @param delimiters A set of delimiter characters.
+     * @return A string, trimmed.
+     */
+    public String nextTo(String delimiters) {
+        int     start = this.pos;
+        int     i = start;
+        boolean ascii = true;
+        while (i < this.end) {
+            byte b = this.source.get(i);
+            if (b < 0) {
+                ascii = false;
+            } else if (delimiters.indexOf(b) >= 0 || b == 0 ||
+                    b == '\n' || b == '\r') {
+                break;
+            }
+            i += 1;
+        }
+        this.pos = i < this.end ? i : this.end + 1;
+        return this.decode(start, i - start, ascii).trim();
+    }
+
+
+    /**
+     * Get the next value. The value can be a Boolean, Double, Integer,
+     * JSONArray, JSONObject, Long, or String, or the JSONObject.NULL object.
+     * @throws JSONException If syntax error.
+     *
+     * @return An object.
+     */
+    public Object nextValue() throws JSONException {
+        char c = this.nextClean();
+
+        switch (c) {
+            case '"':
+            case '\'':
+                return this.nextString(c);
+            case '{':
+                this.back();
+                return new JSONObject(this);
+            case '[':
+                this.back();
+                return new JSONArray(this);
+        }
+
+        /*
+         * Handle unquoted text the same way JSONTokener does. Bytes outside
+         * ASCII never end it.
+         */
+
+        int     start = this.pos - 1;
+        int     i = start;
+        boolean ascii = true;
+        while (i < this.end) {
+            byte b = this.source.get(i);
+            if (b < 0) {
+                ascii = false;
+            } else if (b < ' ' || ",:]}/\\\"[{;=#".indexOf(b) >= 0) {
+                break;
+            }
+            i += 1;
+        }
+        this.pos = i;
+
+        String string = this.decode(start, i - start, ascii).trim();
+        if ("".equals(string)) {
+            throw this.syntaxError("Missing value");
+        }
+        return JSONObject.stringToValue(string);
+    }
+
+
+    /**
+     * Skip bytes until the next byte is the requested character.
+     * If the requested character is not found, nothing is skipped.
+     * @param to An ASCII character to skip to.
+     * @return The requested character, or zero if the requested character
+     * is not found.
+     */
+    public char skipTo(char to) {
+        for (int i = this.pos; i < this.end; i += 1) {
+            if (this.source.get(i) == to) {
+                this.pos = i;
+                return to;
+            }
+        }
+        return 0;
+    }
+
+
+    /**
+     * Get the number of bytes read so far.
+     * @return The offset of the next byte in the source.
+     */
+    long index() {
+        return this.pos - this.begin;
+    }
+
+
+    /**
+     * Make a printable string of this UTF8JSONTokener.
+     *
+     * @return " at {index} [character {character} line {line}]"
+     */
+    public String toString() {
+        int  stop = Math.min(this.pos, this.end);
+        long line = 1;
+        long character = stop - this.begin + 1;
+        for (int i = this.begin; i < stop; i += 1) {
+            if (this.source.get(i) == '\n') {
+                line += 1;
+                character = stop - i - 1;
+            }
+        }
+        return " at " + this.index() + " [character " + character +
+            " line " + line + "]";
+    }
+}
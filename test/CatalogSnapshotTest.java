@@ -0,0 +1,143 @@
+/*
+ * CatalogSnapshot tests for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Writes a snapshot of a small index and checks that it reads back the
+ * same, tables and all, and that it's refused once the product file it
+ * was built from changes (even keeping its size and time), or when the
+ * snapshot itself is damaged.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+public class CatalogSnapshotTest
+{
+  public static void main( String[] args )
+  throws IOException
+  {
+    File source = File.createTempFile( "products", ".txt" );
+    File snapshot = File.createTempFile( "catalog", ".snap" );
+    source.deleteOnExit();
+    snapshot.deleteOnExit();
+    write( source, "products one" );
+
+    List<String> names =
+        Arrays.asList( "Camera_A", "Camera B", "Kamera \u00e9" );
+    String[] manufacturers = { "acme", "\u00e9clair" };
+    Product[][] products = {
+      { new Product( 0, names.get( 0 ), "acme", "fam", "m-1" ),
+        new Product( 1, names.get( 1 ), "acme", null, "" ) },
+      { new Product( 2, names.get( 2 ), "\u00e9clair", null, "\u00e92" ) } };
+    ProductIndex index = new ProductIndex( products );
+    CatalogSnapshot.write( snapshot.getPath(), source, names, manufacturers,
+        products, index );
+
+    CatalogSnapshot read = CatalogSnapshot.map( snapshot.getPath(), source );
+    Check.check( read != null, "snapshot read back" );
+    Check.equal( names, read.productNames, "product names" );
+    Check.check( Arrays.equals( manufacturers, read.manufacturers ),
+        "manufacturers" );
+    ProductIndex mapped = read.productIndex;
+    equal( index.automaton.keys, mapped.automaton.keys, "keys" );
+    equal( index.automaton.targets, mapped.automaton.targets, "targets" );
+    equal( index.automaton.patternLength, mapped.automaton.patternLength,
+        "pattern lengths" );
+    equal( index.automaton.output, mapped.automaton.output, "outputs" );
+    equal( index.automaton.fail, mapped.automaton.fail, "failure links" );
+    equal( index.automaton.dictLink, mapped.automaton.dictLink,
+        "dictionary links" );
+    equal( index.productManufacturer, mapped.productManufacturer,
+        "product manufacturers" );
+    equal( index.productPosition, mapped.productPosition,
+        "product positions" );
+    equal( index.productFamily, mapped.productFamily, "product families" );
+    equal( index.productOrdinal, mapped.productOrdinal, "product ordinals" );
+    equal( index.modelStart, mapped.modelStart, "model starts" );
+    equal( index.modelProducts, mapped.modelProducts, "model products" );
+    equal( index.emptyModelProducts, mapped.emptyModelProducts,
+        "empty model products" );
+    IntStack hits = new IntStack();
+    mapped.automaton.scan( "acme m-1 fam", hits );
+    Check.equal( 4, hits.size(), "patterns found through the mapping" );
+
+    Product[][] readProducts = read.products();
+    for ( int m = 0; m < products.length; m++ ) {
+      Check.equal( products[m].length, readProducts[m].length, "products" );
+      for ( int p = 0; p < products[m].length; p++ ) {
+        Product a = products[m][p];
+        Product b = readProducts[m][p];
+        Check.equal( a.ordinal, b.ordinal, "ordinal" );
+        Check.equal( a.name, b.name, "name" );
+        Check.equal( a.manufacturer, b.manufacturer, "manufacturer" );
+        Check.equal( a.family, b.family, "family" );
+        Check.equal( a.model, b.model, "model" );
+      }
+    }
+
+    // the same bytes with a new time are still current
+    source.setLastModified( source.lastModified() - 10000 );
+    Check.check( CatalogSnapshot.map( snapshot.getPath(), source ) != null,
+        "touched product file" );
+    // other bytes of the same size and time aren't
+    long modified = source.lastModified();
+    write( source, "products two" );
+    source.setLastModified( modified );
+    Check.check( CatalogSnapshot.map( snapshot.getPath(), source ) == null,
+        "changed product file" );
+    // nor is a file of another size
+    write( source, "products three" );
+    Check.check( CatalogSnapshot.map( snapshot.getPath(), source ) == null,
+        "resized product file" );
+
+    // a damaged snapshot is ignored
+    write( source, "products one" );
+    CatalogSnapshot.write( snapshot.getPath(), source, names, manufacturers,
+        products, index );
+    RandomAccessFile file = new RandomAccessFile( snapshot, "rw" );
+    file.setLength( file.length() - 3 );
+    file.close();
+    Check.check( CatalogSnapshot.map( snapshot.getPath(), source ) == null,
+        "truncated snapshot" );
+    Check.check( CatalogSnapshot.map( snapshot.getPath() + ".none", source )
+        == null, "missing snapshot" );
+
+    Check.done( "CatalogSnapshotTest" );
+  }
+
+
+  protected static void equal( IntBuffer expected, IntBuffer actual,
+      String what )
+  {
+    Check.equal( expected.limit(), actual.limit(), what );
+    for ( int i = 0; i < expected.limit(); i++ ) {
+      Check.equal( expected.get( i ), actual.get( i ), what );
+    }
+  }
+
+
+  protected static void equal( LongBuffer expected, LongBuffer actual,
+      String what )
+  {
+    Check.equal( expected.limit(), actual.limit(), what );
+    for ( int i = 0; i < expected.limit(); i++ ) {
+      Check.equal( expected.get( i ), actual.get( i ), what );
+    }
+  }
+
+
+  protected static void write( File file, String text )
+  throws IOException
+  {
+    FileOutputStream out = new FileOutputStream( file );
+    out.write( text.getBytes( StandardCharsets.UTF_8 ) );
+    out.close();
+  }
+}
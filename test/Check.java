@@ -0,0 +1,89 @@
+/*
+ * Test checks for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Just enough of a test harness to run without any libraries: each test
+ * class has a main() that makes its checks through here, then calls
+ * done(), which exits with a failure status if any check failed.
+ * Also makes the random strings and the products that the tests check
+ * with.
+ */
+
+import java.util.Random;
+
+public class Check
+{
+  // what random strings are made of, unless a test gives its own
+  public static final String ALPHABET = "ab1 -_.(";
+
+  protected static int checks = 0;
+  protected static int failures = 0;
+
+
+  public static void check( boolean ok, String what )
+  {
+    checks++;
+    if ( !ok ) {
+      failures++;
+      System.out.println( "FAILED: " + what );
+    }
+  }
+
+
+  public static void equal( Object expected, Object actual, String what )
+  {
+    check( expected == null ? actual == null : expected.equals( actual ),
+        what + ": expected " + expected + ", got " + actual );
+  }
+
+
+  /*
+   * done()
+   *
+   * Reports how the checks went for the named test.
+   */
+  public static void done( String test )
+  {
+    System.out.println( test + ": " + ( checks - failures ) + " of "
+        + checks + " checks passed" );
+    if ( failures > 0 ) {
+      System.exit( 1 );
+    }
+  }
+
+
+  /*
+   * random()
+   *
+   * Returns a string of min to max characters picked from alphabet
+   * (or from ALPHABET).
+   */
+  public static String random( Random random, String alphabet, int min,
+      int max )
+  {
+    StringBuilder s = new StringBuilder();
+    int length = min + random.nextInt( max - min + 1 );
+    for ( int i = 0; i < length; i++ ) {
+      s.append( alphabet.charAt( random.nextInt( alphabet.length() ) ) );
+    }
+    return s.toString();
+  }
+
+
+  public static String random( Random random, int min, int max )
+  {
+    return random( random, ALPHABET, min, max );
+  }
+
+
+  public static Product product( String family, String model )
+  {
+    return new Product( 0, "product", "acme", family, model );
+  }
+
+
+  public static Product product( String model )
+  {
+    return product( null, model );
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * ListingStore tests for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Parses listings into stores the way Match does, and checks what the
+ * stores keep, including after one store is appended to another.
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.json.JSONException;
+
+public class ListingStoreTest
+{
+  public static void main( String[] args )
+  throws Exception
+  {
+    ListingStore a = new ListingStore();
+    parse( a, "{\"title\":\"Canon EOS 7D\",\"manufacturer\":\"Canon\","
+        + "\"currency\":\"USD\",\"price\":\"1299.99\"}" );
+    parse( a, "{\"price\":\"12\",\"title\":\"Caf\\u00e9 \u00c9dition\","
+        + "\"extra\":{\"nested\":[1,2,{\"x\":null}]},"
+        + "\"manufacturer\":\"Fujifilm\"}" );
+    ListingStore b = new ListingStore();
+    parse( b, "{\"title\":\"Nikon D90\",\"manufacturer\":\"NIKON\"}" );
+    parse( b, "{\"manufacturer\":\"canon\",\"title\":\"PowerShot\"}" );
+
+    Check.equal( 2, a.size(), "size" );
+    Check.equal( "canon eos 7d", a.title( 0 ), "title" );
+    Check.equal( "canon", a.manufacturer( a.manufacturerId( 0 ) ),
+        "manufacturer" );
+    Check.equal( "caf\u00e9 \u00e9dition", a.title( 1 ), "non-ascii title" );
+    Check.equal( "fujifilm", a.manufacturer( a.manufacturerId( 1 ) ),
+        "manufacturer after skipped fields" );
+    Check.equal( 14, a.titleBytes( 1 ).remaining(), "utf-8 bytes" );
+
+    a.addAll( b );
+    Check.equal( 4, a.size(), "size after addAll" );
+    Check.equal( "nikon d90", a.title( 2 ), "appended title" );
+    Check.equal( "powershot", a.title( 3 ), "appended title" );
+    Check.equal( a.manufacturerId( 0 ), a.manufacturerId( 3 ),
+        "shared manufacturer id" );
+    Check.equal( 3, a.manufacturerCount(), "distinct manufacturers" );
+
+    // a store with small chunks still holds titles bigger than a chunk
+    ListingStore small = new ListingStore( 8 );
+    parse( small, "{\"title\":\"Canon EOS 7D\",\"manufacturer\":\"Canon\"}" );
+    parse( small, "{\"title\":\"D90\",\"manufacturer\":\"Nikon\"}" );
+    Check.equal( "canon eos 7d", small.title( 0 ),
+        "title bigger than a chunk" );
+    Check.equal( "d90", small.title( 1 ), "title after a big one" );
+
+    // a listing without a manufacturer can't be matched
+    boolean thrown = false;
+    try {
+      parse( a, "{\"title\":\"no maker\"}" );
+    } catch ( JSONException e ) {
+      thrown = true;
+    }
+    Check.check( thrown, "missing manufacturer" );
+    Check.equal( 4, a.size(), "size after a bad listing" );
+
+    Check.done( "ListingStoreTest" );
+  }
+
+
+  protected static void parse( ListingStore store, String line )
+  throws Exception
+  {
+    Match.parseListing( ByteBuffer.wrap(
+        line.getBytes( StandardCharsets.UTF_8 ) ), store );
+  }
+}
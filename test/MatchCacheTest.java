@@ -0,0 +1,65 @@
+/*
+ * MatchCache tests for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Checks that the cache hands back what was put in it only for the same
+ * title and manufacturer, even when fingerprints collide, and that it
+ * evicts the least recently used entry when it's full.
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class MatchCacheTest
+{
+  public static void main( String[] args )
+  {
+    MatchCache cache = new MatchCache( 2 );
+    int[] a = { 1 };
+    int[] b = { 2, 3 };
+
+    cache.put( 7, bytes( "eos 7d" ), "canon", a );
+    Check.check( cache.lookup( 7, bytes( "eos 7d" ), "canon" ) == a, "hit" );
+    // the same fingerprint for another listing is a miss, not a's matches
+    Check.check( cache.lookup( 7, bytes( "eos 5d" ), "canon" ) == null,
+        "colliding title" );
+    Check.check( cache.lookup( 7, bytes( "eos 7d" ), "nikon" ) == null,
+        "colliding manufacturer" );
+    Check.check( cache.lookup( 8, bytes( "eos 7d" ), "canon" ) == null,
+        "other fingerprint" );
+    // a view into a bigger buffer compares only its own bytes
+    ByteBuffer view = bytes( "[eos 7d]" );
+    view.position( 1 );
+    view.limit( 7 );
+    Check.check( cache.lookup( 7, view.slice(), "canon" ) == a, "view" );
+    Check.equal( 2L, cache.hits(), "hits" );
+    Check.equal( 3L, cache.misses(), "misses" );
+
+    // the put copies the title, so changing the buffer afterwards is fine
+    ByteBuffer title = bytes( "d90" );
+    cache.put( 9, title, "nikon", b );
+    title.put( 0, (byte) 'x' );
+    Check.check( cache.lookup( 9, bytes( "d90" ), "nikon" ) == b, "copied" );
+
+    // 7 was used before 9, so it's the one evicted
+    cache.put( 10, bytes( "x100" ), "fujifilm", b );
+    Check.equal( 2, cache.size(), "size" );
+    Check.check( cache.lookup( 7, bytes( "eos 7d" ), "canon" ) == null,
+        "evicted" );
+    Check.check( cache.lookup( 9, bytes( "d90" ), "nikon" ) == b, "kept" );
+
+    // the fingerprint doesn't depend on where the title is split off
+    Check.check( MatchCache.fingerprint( bytes( "ab" ), "c" )
+        != MatchCache.fingerprint( bytes( "a" ), "bc" ), "separator" );
+    Check.check( MatchCache.fingerprint( view.slice(), "canon" )
+        == MatchCache.fingerprint( bytes( "eos 7d" ), "canon" ), "in place" );
+
+    Check.done( "MatchCacheTest" );
+  }
+
+
+  protected static ByteBuffer bytes( String s )
+  {
+    return ByteBuffer.wrap( s.getBytes( StandardCharsets.UTF_8 ) );
+  }
+}
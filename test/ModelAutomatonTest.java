@@ -0,0 +1,98 @@
+/*
+ * ModelAutomaton tests for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Checks the automaton against a brute-force search: for random sets of
+ * patterns (with empty, repeated, overlapping and non-ASCII ones) and
+ * random texts, scan() has to report exactly the occurrences that
+ * String.startsWith() finds, in order of where they end.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class ModelAutomatonTest
+{
+  protected static final String ALPHABET = "ab1 -\u00e9";
+
+
+  public static void main( String[] args )
+  {
+    check( new String[] { "he", "she", "his", "hers" }, "ushers" );
+    check( new String[] { "a", "aa", "aaa", "", "aa" }, "aaaa" );
+    check( new String[] { "dsc-w310", "w310", "cyber-shot" },
+        "sony cyber-shot dsc-w310 w310" );
+    check( new String[ 0 ], "anything" );
+
+    Random random = new Random( 29 );
+    for ( int i = 0; i < 3000; i++ ) {
+      String[] patterns = new String[ random.nextInt( 12 ) ];
+      for ( int p = 0; p < patterns.length; p++ ) {
+        patterns[p] = Check.random( random, ALPHABET, 0, 4 );
+      }
+      for ( int t = 0; t < 10; t++ ) {
+        check( patterns, Check.random( random, ALPHABET, 0, 20 ) );
+      }
+    }
+    Check.done( "ModelAutomatonTest" );
+  }
+
+
+  /*
+   * check()
+   *
+   * Checks that scanning text reports each occurrence of each pattern
+   * once, under the pattern's first number, and in order of where the
+   * occurrences end.
+   */
+  protected static void check( String[] patterns, String text )
+  {
+    ModelAutomaton automaton = new ModelAutomaton( patterns );
+    Check.equal( patterns.length, automaton.patternCount(), "pattern count" );
+    for ( int p = 0; p < patterns.length; p++ ) {
+      Check.equal( patterns[p].length(), automaton.length( p ), "length" );
+    }
+
+    IntStack hits = new IntStack();
+    automaton.scan( text, hits );
+    List<String> found = new ArrayList<String>();
+    int lastEnd = 0;
+    for ( int i = 0; i < hits.size(); i += 2 ) {
+      int p = hits.get( i );
+      int end = hits.get( i + 1 );
+      Check.check( end >= lastEnd, "out of order in \"" + text + "\"" );
+      lastEnd = end;
+      found.add( p + "@" + end );
+    }
+
+    List<String> expected = new ArrayList<String>();
+    for ( int p = 0; p < patterns.length; p++ ) {
+      if ( patterns[p].isEmpty() || first( patterns, p ) != p ) {
+        continue;
+      }
+      int length = patterns[p].length();
+      for ( int start = 0; start + length <= text.length(); start++ ) {
+        if ( text.startsWith( patterns[p], start ) ) {
+          expected.add( p + "@" + ( start + length ) );
+        }
+      }
+    }
+
+    Collections.sort( found );
+    Collections.sort( expected );
+    Check.equal( expected, found, "occurrences in \"" + text + "\"" );
+  }
+
+
+  protected static int first( String[] patterns, int p )
+  {
+    for ( int q = 0; q < p; q++ ) {
+      if ( patterns[q].equals( patterns[p] ) ) {
+        return q;
+      }
+    }
+    return p;
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * ModelFilter tests for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Checks that a model filter never turns away a title that one of its
+ * products matches (with familyAndModelMatch()), for random catalogs and
+ * titles, and that it does turn away titles with none of its words.
+ */
+
+import java.util.Random;
+
+public class ModelFilterTest
+{
+  public static void main( String[] args )
+  {
+    ModelFilter filter = new ModelFilter( new Product[] {
+        Check.product( "cyber-shot", "dsc-w310" ),
+        Check.product( "eos 7d" ), Check.product( "x-a1-y" ) } );
+    Check.check( filter.mightMatch( "sony cyber-shot dsc-w310" ), "bounded" );
+    Check.check( filter.mightMatch( "canon xeos 7dx" ), "contained" );
+    Check.check( filter.mightMatch( "zx-a1-yz" ), "inner token" );
+    Check.check( !filter.mightMatch( "sony cyber-shot dsc-w320" ),
+        "other model" );
+    Check.check( !filter.mightMatch( "" ), "empty title" );
+    Check.check( new ModelFilter( new Product[] { Check.product( "f", "" ) } )
+        .mightMatch( "-" ), "empty model" );
+
+    Random random = new Random( 25 );
+    for ( int i = 0; i < 5000; i++ ) {
+      Product[] products = new Product[ 1 + random.nextInt( 8 ) ];
+      for ( int p = 0; p < products.length; p++ ) {
+        String family =
+            random.nextBoolean() ? null : Check.random( random, 0, 1 );
+        products[p] = Check.product( family, Check.random( random, 0, 6 ) );
+      }
+      filter = new ModelFilter( products );
+      for ( int t = 0; t < 10; t++ ) {
+        String title = Check.random( random, 0, 14 );
+        boolean matches = false;
+        for ( Product product : products ) {
+          matches |= Match.familyAndModelMatch( product, title );
+        }
+        Check.check( !matches || filter.mightMatch( title ),
+            "turned away \"" + title + "\"" );
+      }
+    }
+    Check.done( "ModelFilterTest" );
+  }
+}
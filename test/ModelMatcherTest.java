@@ -0,0 +1,46 @@
+/*
+ * ModelMatcher tests for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Checks ModelMatcher against the regular expressions it replaced:
+ * ".*\\b" + model + "\\b.*" (with the model quoted) when it's
+ * word-bounded, and String.contains() when it isn't. Titles and models
+ * are drawn from a small alphabet with punctuation, so empty,
+ * punctuation-only and repeated models come up often.
+ */
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+public class ModelMatcherTest
+{
+  public static void main( String[] args )
+  {
+    // these used to loop forever
+    check( "", "-" );
+    check( "", "(" );
+    check( "", "" );
+    check( "", "a" );
+    check( "", "a-" );
+    check( "-", "--" );
+    check( "aa", "aaa" );
+
+    Random random = new Random( 15 );
+    for ( int i = 0; i < 20000; i++ ) {
+      check( Check.random( random, 0, 4 ), Check.random( random, 0, 12 ) );
+    }
+    Check.done( "ModelMatcherTest" );
+  }
+
+
+  protected static void check( String model, String title )
+  {
+    String pattern = ".*\\b" + Pattern.quote( model ) + "\\b.*";
+    Check.equal( title.matches( pattern ),
+        new ModelMatcher( model, true ).matches( title ),
+        "bounded \"" + model + "\" in \"" + title + "\"" );
+    Check.equal( title.contains( model ),
+        new ModelMatcher( model, false ).matches( title ),
+        "contained \"" + model + "\" in \"" + title + "\"" );
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * ShiftOrMatcher tests for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Checks that ShiftOrMatcher.scan() finds exactly the products that
+ * familyAndModelMatch() accepts, for random catalogs with empty,
+ * punctuation-only and overlong models and families, and random titles.
+ * A scan that never finishes shows up as this test never finishing.
+ */
+
+import java.util.Random;
+
+public class ShiftOrMatcherTest
+{
+  public static void main( String[] args )
+  {
+    // these used to loop forever with -partition
+    check( new Product[] { Check.product( "b12", "" ) }, "(" );
+    check( new Product[] { Check.product( "-", "" ) }, "-" );
+    check( new Product[] { Check.product( "" ), Check.product( "a", "a" ) },
+        "a" );
+
+    Random random = new Random( 23 );
+    for ( int i = 0; i < 5000; i++ ) {
+      Product[] products = new Product[ 1 + random.nextInt( 12 ) ];
+      for ( int p = 0; p < products.length; p++ ) {
+        String family =
+            random.nextBoolean() ? null : Check.random( random, 0, 2 );
+        String model = ( random.nextInt( 10 ) == 0 )
+            ? Check.random( random, 60, 70 ) : Check.random( random, 0, 5 );
+        products[p] = Check.product( family, model );
+      }
+      for ( int t = 0; t < 5; t++ ) {
+        check( products, Check.random( random, 0, 12 ) );
+      }
+    }
+    Check.done( "ShiftOrMatcherTest" );
+  }
+
+
+  protected static void check( Product[] products, String title )
+  {
+    boolean[] found = new boolean[ products.length ];
+    new ShiftOrMatcher( products ).scan( title, found );
+    for ( int p = 0; p < products.length; p++ ) {
+      Check.equal( Match.familyAndModelMatch( products[p], title ), found[p],
+          "family \"" + products[p].family + "\", model \""
+          + products[p].model + "\" in \"" + title + "\"" );
+    }
+  }
+}
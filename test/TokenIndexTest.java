@@ -0,0 +1,68 @@
+/*
+ * TokenIndex tests for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Checks that the token index never leaves out a product that
+ * familyAndModelMatch() accepts, for random catalogs (with empty,
+ * short, punctuation-only and multi-run models) and random titles.
+ */
+
+import java.util.Random;
+
+public class TokenIndexTest
+{
+  public static void main( String[] args )
+  {
+    Product[][] catalog = {
+      { Check.product( "cyber-shot", "dsc-w310" ),
+        Check.product( "eos 7d" ) },
+      { Check.product( "coolpix", "s6100" ), Check.product( "ab" ) } };
+    check( catalog, "sony cyber-shot dsc-w310 black" );
+    check( catalog, "canon xeos 7dx" );
+    check( catalog, "nikon coolpix s6100" );
+
+    Random random = new Random( 17 );
+    for ( int i = 0; i < 3000; i++ ) {
+      Product[][] products = new Product[ 1 + random.nextInt( 3 ) ][];
+      for ( int m = 0; m < products.length; m++ ) {
+        products[m] = new Product[ 1 + random.nextInt( 6 ) ];
+        for ( int p = 0; p < products[m].length; p++ ) {
+          String family =
+              random.nextBoolean() ? null : Check.random( random, 0, 1 );
+          products[m][p] =
+              Check.product( family, Check.random( random, 0, 6 ) );
+        }
+      }
+      for ( int t = 0; t < 10; t++ ) {
+        check( products, Check.random( random, 0, 14 ) );
+      }
+    }
+    Check.done( "TokenIndexTest" );
+  }
+
+
+  /*
+   * check()
+   *
+   * Checks that every product in catalog that matches title is one of
+   * the index's candidates for it.
+   */
+  protected static void check( Product[][] catalog, String title )
+  {
+    IntStack candidates = new IntStack();
+    new TokenIndex( catalog ).candidates( title, new IntStack(), candidates );
+    boolean[] candidate = new boolean[ 64 ];
+    for ( int i = 0; i < candidates.size(); i++ ) {
+      candidate[ candidates.get( i ) ] = true;
+    }
+    int q = 0;
+    for ( Product[] products : catalog ) {
+      for ( Product product : products ) {
+        Check.check( !Match.familyAndModelMatch( product, title )
+            || candidate[q], "left out family \"" + product.family
+            + "\", model \"" + product.model + "\" for \"" + title + "\"" );
+        q++;
+      }
+    }
+  }
+}
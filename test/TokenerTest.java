@@ -0,0 +1,107 @@
+/*
+ * Tokener tests for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Parses the same JSON texts with the plain Reader-based JSONTokener and
+ * with the in-memory tokeners (FastJSONTokener over a String, a part of
+ * a char array and a StringBuilder, and UTF8JSONTokener over the UTF-8
+ * bytes), and checks that they all read the same objects, project the
+ * same fields, and reject the same malformed texts.
+ */
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import org.json.FastJSONTokener;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.json.UTF8JSONTokener;
+
+public class TokenerTest
+{
+  protected static final String[] FIELDS = { "title", "manufacturer" };
+
+  protected static final String[] TEXTS = {
+    "{}",
+    "{\"title\":\"Canon EOS 7D\",\"manufacturer\":\"Canon\","
+        + "\"currency\":\"USD\",\"price\":\"1299.99\"}",
+    " { \"manufacturer\" : \"Nikon\" , \"title\" : \"D90\" } ",
+    "{\"title\":\"Caf\\u00e9 \u00c9dition \\\"quoted\\\" \\\\ \\/\","
+        + "\"manufacturer\":\"Fujifilm\"}",
+    "{\"title\":\"a very long title that is well over thirty-two "
+        + "characters\",\"n\":-12.5e3,\"b\":true,\"z\":null}",
+    "{'title':'single quoted','manufacturer':unquoted,'x':[1,'2',{}]}",
+    "{\"extra\":{\"nested\":[1,2,{\"x\":null}]},\"title\":\"\","
+        + "\"manufacturer\":\"\u65e5\u672c\"}",
+    "{\"title\":\"tab\\there\",\"k\"=>\"v\";\"manufacturer\"=\"m\",}",
+  };
+
+  protected static final String[] MALFORMED = {
+    "",
+    "[]",
+    "{\"title\":\"unterminated}",
+    "{\"title\" \"no colon\"}",
+    "{\"title\":\"a\" \"manufacturer\":\"b\"}",
+    "{\"title\":}",
+    "{\"title\":\"a\",\"title\":\"b\"}",
+  };
+
+
+  public static void main( String[] args )
+  throws Exception
+  {
+    for ( String text : TEXTS ) {
+      JSONObject expected = new JSONObject(
+          new JSONTokener( new StringReader( text ) ) );
+      for ( JSONTokener x : tokeners( text ) ) {
+        Check.equal( expected.toString(), new JSONObject( x ).toString(),
+            "object from " + x.getClass().getSimpleName() + ": " + text );
+      }
+      for ( JSONTokener x : tokeners( text ) ) {
+        Object[] values = new Object[ FIELDS.length ];
+        JSONObject.readFields( x, FIELDS, values );
+        for ( int i = 0; i < FIELDS.length; i++ ) {
+          Check.equal( expected.opt( FIELDS[i] ), values[i], FIELDS[i]
+              + " from " + x.getClass().getSimpleName() + ": " + text );
+        }
+      }
+    }
+
+    for ( String text : MALFORMED ) {
+      for ( JSONTokener x : tokeners( text ) ) {
+        boolean thrown = false;
+        try {
+          new JSONObject( x );
+        } catch ( JSONException e ) {
+          thrown = true;
+        }
+        Check.check( thrown, "rejected by " + x.getClass().getSimpleName()
+            + ": " + text );
+      }
+    }
+
+    // the part of the array outside offset and length isn't read
+    char[] padded = "{{\"title\":\"t\"}}".toCharArray();
+    Check.equal( "t", new JSONObject( new FastJSONTokener( padded, 1,
+        padded.length - 2 ) ).get( "title" ), "offset into an array" );
+
+    Check.done( "TokenerTest" );
+  }
+
+
+  /*
+   * tokeners()
+   *
+   * Returns a fresh in-memory tokener of each kind over text.
+   */
+  protected static JSONTokener[] tokeners( String text )
+  {
+    char[] padded = ( "[[" + text + "]]" ).toCharArray();
+    return new JSONTokener[] {
+      new FastJSONTokener( text ),
+      new FastJSONTokener( padded, 2, text.length() ),
+      new FastJSONTokener( new StringBuilder( text ) ),
+      new UTF8JSONTokener( text.getBytes( StandardCharsets.UTF_8 ) ),
+    };
+  }
+}
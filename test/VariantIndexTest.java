@@ -0,0 +1,148 @@
+/*
+ * VariantIndex tests for the sortable.com coding challenge
+ * by Kellen Steffen
+ *
+ * Checks the variant index against a brute-force search: a product is a
+ * candidate for a title exactly when its model's canonical key is long
+ * enough and is the title's letters and digits from a run of whole
+ * runs, with only separators between them and no digits on both sides
+ * of a separator.
+ */
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class VariantIndexTest
+{
+  protected static final String ALPHABET = "ab1\u00e9 -_.(";
+
+
+  public static void main( String[] args )
+  {
+    Check.equal( "dscw310", VariantIndex.canonical( "dsc-w310" ),
+        "canonical key" );
+    Check.equal( "abc1", VariantIndex.canonical( "a b_c-1" ),
+        "canonical key" );
+    Check.equal( null, VariantIndex.canonical( "gxr (a12)" ),
+        "no key with other punctuation" );
+
+    Product[][] catalog = {
+      { Check.product( "dsc-w310" ), Check.product( "4.3" ),
+        Check.product( "abc" ) },
+      { Check.product( "eos 7d mark ii" ), Check.product( "" ) } };
+    check( catalog, "sony dscw310 black" );
+    check( catalog, "sony dsc w310 black" );
+    check( catalog, "sony dsc_w-310" );
+    check( catalog, "sony xdscw310" );
+    check( catalog, "sony dsc--w310" );
+    check( catalog, "canon eos-7d mark-ii" );
+    check( catalog, "4.3 abc" );
+
+    // digits on both sides of a gap are two numbers, not one model
+    Product[][] numbers = {
+      { Check.product( "ex-z33" ), Check.product( "a49510" ),
+        Check.product( "d1012" ) } };
+    String[] titles = { "casio exilim ex-z3 3.2mp", "a495 10.1 mp",
+        "d10 12.1 mp" };
+    for ( String title : titles ) {
+      Check.equal( new HashSet<Integer>(), found( numbers, title ),
+          "no candidates for \"" + title + "\"" );
+    }
+    Check.equal( 3, found( numbers, "ex z33 a-49510 d1012" ).size(),
+        "candidates with each number whole" );
+
+    Random random = new Random( 41 );
+    for ( int i = 0; i < 3000; i++ ) {
+      Product[][] products = new Product[ 1 + random.nextInt( 3 ) ][];
+      for ( int m = 0; m < products.length; m++ ) {
+        products[m] = new Product[ 1 + random.nextInt( 6 ) ];
+        for ( int p = 0; p < products[m].length; p++ ) {
+          products[m][p] =
+              Check.product( Check.random( random, ALPHABET, 0, 8 ) );
+        }
+      }
+      for ( int t = 0; t < 10; t++ ) {
+        check( products, Check.random( random, ALPHABET, 0, 16 ) );
+      }
+    }
+    Check.done( "VariantIndexTest" );
+  }
+
+
+  /*
+   * check()
+   *
+   * Checks that the index's candidates for title are exactly the
+   * products whose keys the title spells out.
+   */
+  protected static void check( Product[][] catalog, String title )
+  {
+    Set<Integer> found = found( catalog, title );
+    Set<String> spelled = spelled( title );
+    Set<Integer> expected = new HashSet<Integer>();
+    int q = 0;
+    for ( Product[] products : catalog ) {
+      for ( Product product : products ) {
+        String key = VariantIndex.canonical( product.model );
+        if ( key != null && key.length() >= VariantIndex.MIN_LENGTH
+            && spelled.contains( key ) ) {
+          expected.add( q );
+        }
+        q++;
+      }
+    }
+    Check.equal( expected, found, "candidates for \"" + title + "\"" );
+  }
+
+
+  protected static Set<Integer> found( Product[][] catalog, String title )
+  {
+    IntStack candidates = new IntStack();
+    new VariantIndex( catalog ).candidates( title, new StringBuilder(),
+        candidates );
+    Set<Integer> found = new HashSet<Integer>();
+    for ( int i = 0; i < candidates.size(); i++ ) {
+      found.add( candidates.get( i ) );
+    }
+    return found;
+  }
+
+
+  /*
+   * spelled()
+   *
+   * Returns every key that title spells out: the letters and digits of
+   * each run of consecutive letter-and-digit runs whose gaps are only
+   * separators, with no digits on both sides of a gap.
+   */
+  protected static Set<String> spelled( String title )
+  {
+    Set<String> keys = new HashSet<String>();
+    for ( int i = 0; i < title.length(); i++ ) {
+      if ( !Character.isLetterOrDigit( title.charAt( i ) )
+          || ( i > 0 && Character.isLetterOrDigit( title.charAt( i - 1 ) ) ) ) {
+        continue;
+      }
+      StringBuilder key = new StringBuilder();
+      for ( int j = i; j < title.length(); j++ ) {
+        char c = title.charAt( j );
+        if ( Character.isLetterOrDigit( c ) ) {
+          if ( j > i && !Character.isLetterOrDigit( title.charAt( j - 1 ) )
+              && Character.isDigit( c )
+              && Character.isDigit( key.charAt( key.length() - 1 ) ) ) {
+            break;
+          }
+          key.append( c );
+          if ( j + 1 == title.length()
+              || !Character.isLetterOrDigit( title.charAt( j + 1 ) ) ) {
+            keys.add( key.toString() );
+          }
+        } else if ( c != ' ' && c != '-' && c != '_' ) {
+          break;
+        }
+      }
+    }
+    return keys;
+  }
+}